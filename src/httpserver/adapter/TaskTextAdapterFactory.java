@@ -0,0 +1,47 @@
+package httpserver.adapter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import task.Task;
+
+import java.io.IOException;
+
+// Gson читает поля напрямую, а у лениво загруженных задач имя и описание доступны только через геттеры
+public class TaskTextAdapterFactory implements TypeAdapterFactory {
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!Task.class.isAssignableFrom(type.getRawType())) {
+            return null;
+        }
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
+        return new TypeAdapter<>() {
+            @Override
+            public void write(JsonWriter jsonWriter, T value) throws IOException {
+                JsonElement element = delegate.toJsonTree(value);
+                if (element.isJsonObject()) {
+                    Task task = (Task) value;
+                    JsonObject object = element.getAsJsonObject();
+                    if (!object.has("name") && task.getName() != null) {
+                        object.addProperty("name", task.getName());
+                    }
+                    if (!object.has("description") && task.getDescription() != null) {
+                        object.addProperty("description", task.getDescription());
+                    }
+                }
+                elementAdapter.write(jsonWriter, element);
+            }
+
+            @Override
+            public T read(JsonReader jsonReader) throws IOException {
+                return delegate.read(jsonReader);
+            }
+        };
+    }
+}
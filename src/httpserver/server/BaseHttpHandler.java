@@ -4,7 +4,10 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
 public abstract class BaseHttpHandler implements HttpHandler {
     protected void sendText(HttpExchange exchange, String text, int statusCode) throws IOException {
@@ -17,9 +20,31 @@ public abstract class BaseHttpHandler implements HttpHandler {
         }
     }
 
+    // Параметры сырой строки запроса (getRawQuery) вида a=1&b=2; имена и значения раскодируются после
+    // разбора, поэтому %26 и %3D внутри значения не ломают его. Параметры без значения пропускаются
+    protected Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            if (parts.length == 2) {
+                params.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                        URLDecoder.decode(parts[1], StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
     private void sendJson(HttpExchange exchange, String json, int statusCode) throws IOException {
+        sendJson(exchange, json.getBytes(StandardCharsets.UTF_8), statusCode);
+    }
+
+    // Отправка заранее подготовленного тела, например из ResponseCache
+    protected void sendJson(HttpExchange exchange, byte[] body, int statusCode) throws IOException {
         exchange.getResponseHeaders().add("Content-Type", "application/json;charset=UTF-8");
-        sendResponse(exchange, json, statusCode);
+        sendResponse(exchange, body, statusCode);
     }
 
     private void sendBadRequest(HttpExchange exchange, String message) throws IOException {
@@ -39,7 +64,10 @@ public abstract class BaseHttpHandler implements HttpHandler {
     }
 
     private void sendResponse(HttpExchange exchange, String message, int statusCode) throws IOException {
-        byte[] response = message.getBytes(StandardCharsets.UTF_8);
+        sendResponse(exchange, message.getBytes(StandardCharsets.UTF_8), statusCode);
+    }
+
+    private void sendResponse(HttpExchange exchange, byte[] response, int statusCode) throws IOException {
         exchange.sendResponseHeaders(statusCode, response.length);
         exchange.getResponseBody().write(response);
         exchange.close();
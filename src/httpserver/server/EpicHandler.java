@@ -18,8 +18,8 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 public class EpicHandler extends TaskHandler {
-    public EpicHandler(TaskManager taskManager) {
-        super(taskManager);
+    public EpicHandler(TaskManager taskManager, HistorySessions sessions, ResponseCache responseCache) {
+        super(taskManager, sessions, responseCache);
     }
 
     @Override
@@ -34,7 +34,7 @@ public class EpicHandler extends TaskHandler {
                 }
             } else {
                 int taskId = getTaskIdFromRequest(query);
-                Epic task = taskManager.getEpic(taskId);
+                Epic task = viewEpic(taskId, exchange);
 
                 if (query.contains("/subtasks")) {
                     List<Integer> subtaskIds = task.getSubtaskIds();
@@ -52,6 +52,19 @@ public class EpicHandler extends TaskHandler {
     }
 
 
+    private Epic viewEpic(int id, HttpExchange exchange) {
+        HistorySessions.Session session = sessions.of(exchange);
+        if (session == null) {
+            return taskManager.getEpic(id);
+        }
+        Epic epic = taskManager.getEpicsMap().get(id);
+        if (epic == null) {
+            throw new NotFoundException("Эпическая задача с ID " + id + " не найдена.");
+        }
+        session.add(epic);
+        return epic;
+    }
+
     @Override
     protected void handlePost(HttpExchange exchange) throws IOException {
         try {
@@ -95,7 +108,13 @@ public class EpicHandler extends TaskHandler {
     protected void handleDelete(String query, HttpExchange exchange) throws IOException {
         try {
             int taskIdToDelete = getTaskIdFromRequest(query);
+            // Подзадачи удаляются вместе с эпиком, их тела в кеше больше не нужны
+            Epic epic = taskManager.getEpicsMap().get(taskIdToDelete);
+            int[] subtaskIds = epic == null ? new int[0] : epic.getSubtaskIdSet().toIntArray();
             taskManager.deleteEpic(taskIdToDelete);
+            for (int subtaskId : subtaskIds) {
+                responseCache.invalidate(subtaskId);
+            }
             String response = "Задача с ID: " + taskIdToDelete + " удалена.";
             sendText(exchange, response, 200);
         } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException | URISyntaxException e) {
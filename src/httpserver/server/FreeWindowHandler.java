@@ -0,0 +1,59 @@
+package httpserver.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import exception.NotFoundException;
+import manager.TaskManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+// GET /prioritized/free?from=2024-10-01T05:00&duration=PT30M — ближайшее свободное окно заданной длительности
+public class FreeWindowHandler extends BaseHttpHandler {
+    private final TaskManager taskManager;
+    private final Gson gson = HttpTaskServer.getGson();
+
+    public FreeWindowHandler(TaskManager taskManager) {
+        this.taskManager = taskManager;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (exchange.getRequestMethod().equals("GET")) {
+                handleGet(exchange);
+            } else {
+                sendText(exchange, "Метод не поддерживается.", 405);
+            }
+        } catch (Exception e) {
+            sendText(exchange, "500 Internal Server Error", 500);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleGet(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (!params.containsKey("duration")) {
+                throw new IllegalArgumentException("В параметрах запроса не указана продолжительность окна.");
+            }
+            Duration duration = Duration.parse(params.get("duration"));
+            LocalDateTime from = params.containsKey("from") ? LocalDateTime.parse(params.get("from"))
+                    : LocalDateTime.now();
+            LocalDateTime start = taskManager.findFreeWindow(from, duration);
+            JsonObject window = new JsonObject();
+            window.add("start", gson.toJsonTree(start));
+            window.add("end", gson.toJsonTree(start.plus(duration)));
+            sendText(exchange, gson.toJson(window), 200);
+        } catch (DateTimeParseException | IllegalArgumentException | ArithmeticException e) {
+            sendText(exchange, e.getMessage(), 400);
+        } catch (NotFoundException e) {
+            sendText(exchange, e.getMessage(), 404);
+        }
+    }
+}
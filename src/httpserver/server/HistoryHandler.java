@@ -8,6 +8,7 @@ import exception.InvalidTaskIdException;
 import exception.NotFoundException;
 import httpserver.adapter.DurationAdapter;
 import httpserver.adapter.LocalDateTimeAdapter;
+import httpserver.adapter.TaskTextAdapterFactory;
 import manager.TaskManager;
 import task.Task;
 
@@ -20,10 +21,14 @@ public class HistoryHandler extends TaskListHandler {
     private final Gson gson = new GsonBuilder()
             .registerTypeAdapter(Duration.class, new DurationAdapter())
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeAdapterFactory(new TaskTextAdapterFactory())
             .create();
 
-    public HistoryHandler(TaskManager taskManager) {
+    private final HistorySessions sessions;
+
+    public HistoryHandler(TaskManager taskManager, HistorySessions sessions) {
         super(taskManager);
+        this.sessions = sessions;
     }
 
     @Override
@@ -34,7 +39,8 @@ public class HistoryHandler extends TaskListHandler {
     @Override
     protected void handleGet(String response, HttpExchange exchange) throws IOException {
         try {
-            List<Task> history = taskManager.getHistory();
+            HistorySessions.Session session = sessions.of(exchange);
+            List<Task> history = session == null ? taskManager.getHistory() : session.getHistory();
             response = gson.toJson(history);
             sendText(exchange, response, 200);
         } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException e) {
@@ -0,0 +1,114 @@
+package httpserver.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import manager.FrequencyHistoryManager;
+import manager.FrequencySketch;
+import manager.HistoryManager;
+import manager.HistoryPolicy;
+import manager.IdHistoryManager;
+import manager.TaskManager;
+import task.Task;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Истории просмотров по клиентам. Клиент называет себя заголовком X-Session-Id; просмотры с ним
+ * попадают в ограниченную политикой историю этой сессии, а общая история менеджера их не видит.
+ * Сессия хранит только id и получает задачи у менеджера при чтении. Сессии без запросов дольше
+ * idleTimeout удаляются при очередном обращении, так что память зависит от числа активных клиентов.
+ * Если задан sketch, просмотры сессий считаются в нём так же, как просмотры через менеджер.
+ */
+public class HistorySessions {
+    public static final String HEADER = "X-Session-Id";
+    private static final HistoryPolicy DEFAULT_POLICY = new HistoryPolicy(100, null);
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+    private final TaskManager taskManager;
+    private final HistoryPolicy policy;
+    private final long idleMillis;
+    private final Clock clock;
+    private final FrequencySketch sketch;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong();
+
+    public HistorySessions(TaskManager taskManager) {
+        this(taskManager, DEFAULT_POLICY, DEFAULT_IDLE_TIMEOUT, Clock.systemUTC());
+    }
+
+    public HistorySessions(TaskManager taskManager, FrequencySketch sketch) {
+        this(taskManager, DEFAULT_POLICY, DEFAULT_IDLE_TIMEOUT, Clock.systemUTC(), sketch);
+    }
+
+    public HistorySessions(TaskManager taskManager, HistoryPolicy policy, Duration idleTimeout, Clock clock) {
+        this(taskManager, policy, idleTimeout, clock, null);
+    }
+
+    public HistorySessions(TaskManager taskManager, HistoryPolicy policy, Duration idleTimeout, Clock clock,
+                           FrequencySketch sketch) {
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Время простоя сессии должно быть положительным");
+        }
+        this.taskManager = taskManager;
+        this.policy = policy;
+        this.idleMillis = idleTimeout.toMillis();
+        this.clock = clock;
+        this.sketch = sketch;
+    }
+
+    // Сессия клиента из заголовка запроса или null, если клиент пользуется общей историей
+    Session of(HttpExchange exchange) {
+        String id = exchange.getRequestHeaders().getFirst(HEADER);
+        if (id == null || id.isBlank()) {
+            return null;
+        }
+        long now = clock.millis();
+        evictIdle(now);
+        Session session = sessions.computeIfAbsent(id, key -> new Session());
+        session.lastAccess = now;
+        return session;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    // Обход всех сессий идёт не чаще раза в половину времени простоя
+    private void evictIdle(long now) {
+        long due = nextSweep.get();
+        if (now < due || !nextSweep.compareAndSet(due, now + Math.max(1, idleMillis / 2))) {
+            return;
+        }
+        sessions.values().removeIf(session -> now - session.lastAccess >= idleMillis);
+    }
+
+    private Task findTask(int id) {
+        Task task = taskManager.getTasksMap().get(id);
+        if (task == null) {
+            task = taskManager.getSubtasksMap().get(id);
+        }
+        return task != null ? task : taskManager.getEpicsMap().get(id);
+    }
+
+    class Session {
+        private final HistoryManager history = sketch == null ? new IdHistoryManager(policy, clock)
+                : new FrequencyHistoryManager(new IdHistoryManager(policy, clock), sketch);
+        private volatile long lastAccess;
+
+        private Session() {
+            history.bind(HistorySessions.this::findTask);
+        }
+
+        synchronized void add(Task task) {
+            history.add(task);
+        }
+
+        synchronized List<Task> getHistory() {
+            return history.getHistory();
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.google.gson.GsonBuilder;
 import com.sun.net.httpserver.HttpServer;
 import httpserver.adapter.DurationAdapter;
 import httpserver.adapter.LocalDateTimeAdapter;
+import httpserver.adapter.TaskTextAdapterFactory;
+import manager.FrequencySketch;
 import manager.Managers;
 import manager.TaskManager;
 
@@ -12,18 +14,54 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HttpTaskServer {
     private static HttpServer server;
     private static final int PORT = 8080;
+    private static final int CACHE_CAPACITY = 256;
+    private ExecutorService executor;
 
     public HttpTaskServer(TaskManager manager) throws IOException {
+        this(manager, new HistorySessions(manager));
+    }
+
+    // Истории клиентов с заголовком X-Session-Id; запросы без заголовка пользуются общей историей менеджера
+    public HttpTaskServer(TaskManager manager, HistorySessions sessions) throws IOException {
+        this(manager, sessions, ResponseCache.disabled());
+    }
+
+    /*
+     * Готовые ответы для самых частых задач и подзадач. Частоты кеш берёт из своего sketch — тот же sketch
+     * должны пополнять история менеджера (Managers.getFrequencyHistory) и сессии, иначе кеш не узнает о чтениях.
+     */
+    public HttpTaskServer(TaskManager manager, HistorySessions sessions, ResponseCache responseCache)
+            throws IOException {
         server = HttpServer.create(new InetSocketAddress(PORT), 0);
-        server.createContext("/tasks", new TaskHandler(manager));
-        server.createContext("/subtasks", new SubtaskHandler(manager));
-        server.createContext("/epics", new EpicHandler(manager));
-        server.createContext("/history", new HistoryHandler(manager));
+        server.createContext("/tasks", new TaskHandler(manager, sessions, responseCache));
+        server.createContext("/subtasks", new SubtaskHandler(manager, sessions, responseCache));
+        server.createContext("/epics", new EpicHandler(manager, sessions, responseCache));
+        server.createContext("/history", new HistoryHandler(manager, sessions));
         server.createContext("/prioritized", new PrioritizedHandler(manager));
+        server.createContext("/prioritized/free", new FreeWindowHandler(manager));
+    }
+
+    // Запросы обрабатываются пулом потоков; менеджер должен быть потокобезопасным, например ConcurrentTaskManager
+    public HttpTaskServer(TaskManager manager, int threads) throws IOException {
+        this(manager);
+        useThreads(threads);
+    }
+
+    public HttpTaskServer(TaskManager manager, HistorySessions sessions, ResponseCache responseCache, int threads)
+            throws IOException {
+        this(manager, sessions, responseCache);
+        useThreads(threads);
+    }
+
+    private void useThreads(int threads) {
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
     }
 
     public void start() {
@@ -33,19 +71,26 @@ public class HttpTaskServer {
 
     public void stop() {
         server.stop(2);
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 
     public static Gson getGson() {
         return new GsonBuilder()
                 .registerTypeAdapter(Duration.class, new DurationAdapter())
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapterFactory(new TaskTextAdapterFactory())
                 .create();
     }
 
     public static void main(String[] args) {
         try {
-            TaskManager taskManager = Managers.getDefault();
-            HttpTaskServer taskServer = new HttpTaskServer(taskManager);
+            // Один sketch на все чтения: его пополняют история менеджера и истории сессий, а кеш ответов читает
+            FrequencySketch sketch = new FrequencySketch(CACHE_CAPACITY * 16, CACHE_CAPACITY);
+            TaskManager taskManager = Managers.getConcurrent(sketch);
+            HttpTaskServer taskServer = new HttpTaskServer(taskManager, new HistorySessions(taskManager, sketch),
+                    new ResponseCache(sketch, CACHE_CAPACITY), Runtime.getRuntime().availableProcessors());
             taskServer.start();
         } catch (IOException e) {
             System.out.println("Ошибка при запуске сервера " + e.getMessage());
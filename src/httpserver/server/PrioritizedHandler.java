@@ -8,18 +8,22 @@ import exception.InvalidTaskIdException;
 import exception.NotFoundException;
 import httpserver.adapter.DurationAdapter;
 import httpserver.adapter.LocalDateTimeAdapter;
+import httpserver.adapter.TaskTextAdapterFactory;
 import manager.TaskManager;
 import task.Task;
 
 import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 
 public class PrioritizedHandler extends TaskListHandler {
     private final Gson gson = new GsonBuilder()
             .registerTypeAdapter(Duration.class, new DurationAdapter())
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeAdapterFactory(new TaskTextAdapterFactory())
             .create();
 
     public PrioritizedHandler(TaskManager taskManager) {
@@ -52,13 +56,24 @@ public class PrioritizedHandler extends TaskListHandler {
 
     protected void handleGet(String response, HttpExchange exchange) throws IOException {
         try {
-            List<Task> sortedTasks = taskManager.getPrioritizedTasks();
+            String query = exchange.getRequestURI().getRawQuery();
+            List<Task> sortedTasks = query == null || query.isEmpty() ? taskManager.getPrioritizedTasks()
+                    : getPage(parseQuery(query));
             response = gson.toJson(sortedTasks);
             sendText(exchange, response, 200);
-        } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException e) {
+        } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException | DateTimeParseException e) {
             handleErrorResponse(e, "Ошибка в запросе", 400, exchange);
         } catch (NotFoundException e) {
             handleErrorResponse(e, "Данные не найдены", 404, exchange);
         }
     }
+
+    // ?from=2024-10-01T00:00&to=2024-10-08T00:00&limit=50&after=17 — after берётся из id последней задачи предыдущей страницы
+    private List<Task> getPage(Map<String, String> params) {
+        LocalDateTime from = params.containsKey("from") ? LocalDateTime.parse(params.get("from")) : null;
+        LocalDateTime to = params.containsKey("to") ? LocalDateTime.parse(params.get("to")) : null;
+        int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : Integer.MAX_VALUE;
+        Integer after = params.containsKey("after") ? Integer.valueOf(params.get("after")) : null;
+        return taskManager.getPrioritizedTasks(from, to, limit, after);
+    }
 }
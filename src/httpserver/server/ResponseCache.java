@@ -0,0 +1,146 @@
+package httpserver.server;
+
+import manager.FrequencySketch;
+import task.Task;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/*
+ * Готовые тела ответов для самых запрашиваемых задач. Сам кеш чтения не считает: частоты берутся из
+ * общего FrequencySketch, который пополняют истории просмотров менеджера и сессий (FrequencyHistoryManager),
+ * так что каждый просмотр учитывается один раз. При промахе в полном кеше из нескольких случайных записей
+ * выбирается самая редкая, и новое тело вытесняет её, только если задача встречается чаще. Так разовые запросы не вымывают горячие задачи,
+ * а промах стоит O(SAMPLE) независимо от ёмкости. Обработчики снимают записи при изменении и удалении
+ * задач; вдобавок запись привязана к объекту задачи, так что замена задачи в менеджере в обход сервера
+ * тоже не вернёт устаревшее тело. Эпики меняются на месте, поэтому для них кеш не используется.
+ */
+public class ResponseCache {
+    private static final int DEFAULT_CAPACITY = 256;
+    // Сколько записей сравнивается при выборе вытесняемой
+    private static final int SAMPLE = 8;
+
+    private final FrequencySketch sketch;
+    private final int capacity;
+    // Чтение без блокировки; изменения идут под блокировкой кеша вместе с массивом слотов
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    // id закешированных задач подряд — для случайной выборки кандидатов на вытеснение
+    private final int[] slotIds;
+    private int filled;
+
+    private static final class Entry {
+        private final Task task;
+        private final byte[] body;
+        // Номер в slotIds, меняется под блокировкой кеша
+        private int slot;
+
+        Entry(Task task, byte[] body) {
+            this.task = task;
+            this.body = body;
+        }
+    }
+
+    public ResponseCache(FrequencySketch sketch) {
+        this(sketch, DEFAULT_CAPACITY);
+    }
+
+    public ResponseCache(FrequencySketch sketch, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость кеша ответов должна быть положительной");
+        }
+        this.sketch = Objects.requireNonNull(sketch);
+        this.capacity = capacity;
+        this.slotIds = new int[capacity];
+    }
+
+    private ResponseCache() {
+        this.sketch = null;
+        this.capacity = 0;
+        this.slotIds = new int[0];
+    }
+
+    // Кеш без частот: каждое тело отрисовывается заново
+    public static ResponseCache disabled() {
+        return new ResponseCache();
+    }
+
+    byte[] body(Task task, Function<Task, String> render) {
+        if (sketch == null) {
+            return render.apply(task).getBytes(StandardCharsets.UTF_8);
+        }
+        Entry entry = entries.get(task.getId());
+        if (entry != null && entry.task == task) {
+            return entry.body;
+        }
+        byte[] body = render.apply(task).getBytes(StandardCharsets.UTF_8);
+        admit(new Entry(task, body));
+        return body;
+    }
+
+    // Задача изменена или удалена: следующее чтение отрисует её заново
+    public synchronized void invalidate(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        int last = slotIds[--filled];
+        slotIds[entry.slot] = last;
+        if (last != id) {
+            entries.get(last).slot = entry.slot;
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        filled = 0;
+    }
+
+    public boolean contains(int id) {
+        return entries.containsKey(id);
+    }
+
+    public FrequencySketch getSketch() {
+        return sketch;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private synchronized void admit(Entry candidate) {
+        int id = candidate.task.getId();
+        Entry previous = entries.get(id);
+        if (previous != null) {
+            candidate.slot = previous.slot;
+            entries.put(id, candidate);
+            return;
+        }
+        if (filled < capacity) {
+            candidate.slot = filled;
+            slotIds[filled++] = id;
+            entries.put(id, candidate);
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int victimSlot = -1;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int i = 0; i < Math.min(SAMPLE, filled); i++) {
+            int slot = random.nextInt(filled);
+            int frequency = sketch.frequency(slotIds[slot]);
+            if (frequency < victimFrequency) {
+                victimSlot = slot;
+                victimFrequency = frequency;
+            }
+        }
+        if (sketch.frequency(id) > victimFrequency) {
+            entries.remove(slotIds[victimSlot]);
+            candidate.slot = victimSlot;
+            slotIds[victimSlot] = id;
+            entries.put(id, candidate);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import exception.ManagerValidatePriorityException;
 import exception.NotFoundException;
 import manager.TaskManager;
 import task.Subtask;
+import task.Task;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -18,25 +19,24 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 public class SubtaskHandler extends TaskHandler {
-    public SubtaskHandler(TaskManager taskManager) {
-        super(taskManager);
+    public SubtaskHandler(TaskManager taskManager, HistorySessions sessions, ResponseCache responseCache) {
+        super(taskManager, sessions, responseCache);
     }
 
     @Override
     protected void handleGet(String query, HttpExchange exchange) throws IOException {
         try {
-            String response;
             if (query == null || query.isEmpty()) {
                 List<Subtask> allTasks = taskManager.getAllSubtasks();
-                response = allTasks.stream()
+                String response = allTasks.stream()
                         .map(Subtask::toString)
                         .collect(Collectors.joining("\n"));
+                sendText(exchange, response, 200);
             } else {
                 int taskId = getTaskIdFromRequest(query);
-                Subtask task = taskManager.getSubtask(taskId);
-                response = task.toString();
+                Subtask task = viewSubtask(taskId, exchange);
+                sendJson(exchange, responseCache.body(task, Task::toString), 200);
             }
-            sendText(exchange, response, 200);
         } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException | URISyntaxException e) {
             handleErrorResponse(e, 400, exchange);
         } catch (NotFoundException e) {
@@ -44,6 +44,19 @@ public class SubtaskHandler extends TaskHandler {
         }
     }
 
+    private Subtask viewSubtask(int id, HttpExchange exchange) {
+        HistorySessions.Session session = sessions.of(exchange);
+        if (session == null) {
+            return taskManager.getSubtask(id);
+        }
+        Subtask subtask = taskManager.getSubtaskWithoutHistory(id);
+        if (subtask == null) {
+            throw new NotFoundException("Подзадача с ID " + id + " не найдена.");
+        }
+        session.add(subtask);
+        return subtask;
+    }
+
     @Override
     protected void handlePost(HttpExchange exchange) throws IOException {
         try {
@@ -60,6 +73,7 @@ public class SubtaskHandler extends TaskHandler {
                 response = "Задача успешно добавлена с ID: " + taskId;
             } else {
                 taskManager.updateSubtask(newTask);
+                responseCache.invalidate(taskId);
                 response = "Задача с ID " + taskId + " успешно обновлена.";
             }
             sendText(exchange, response, 201);
@@ -79,6 +93,7 @@ public class SubtaskHandler extends TaskHandler {
             Subtask updatedTask = readTaskFromRequest(exchange);
             updatedTask.setId(taskId);
             taskManager.updateSubtask(updatedTask);
+            responseCache.invalidate(taskId);
             String response = "Задача с ID " + taskId + " успешно обновлена.";
             sendText(exchange, response, 201);
         } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException | URISyntaxException
@@ -96,6 +111,7 @@ public class SubtaskHandler extends TaskHandler {
         try {
             int taskIdToDelete = getTaskIdFromRequest(query);
             taskManager.deleteSubtask(taskIdToDelete);
+            responseCache.invalidate(taskIdToDelete);
             String response = "Задача с ID: " + taskIdToDelete + " удалена.";
             sendText(exchange, response, 200);
         } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException | URISyntaxException e) {
@@ -10,6 +10,7 @@ import exception.ManagerValidatePriorityException;
 import exception.NotFoundException;
 import httpserver.adapter.DurationAdapter;
 import httpserver.adapter.LocalDateTimeAdapter;
+import httpserver.adapter.TaskTextAdapterFactory;
 import manager.TaskManager;
 import task.Task;
 
@@ -27,11 +28,16 @@ import java.util.stream.Collectors;
 public class TaskHandler extends BaseHttpHandler {
     protected final TaskManager taskManager;
     protected final Gson gson;
+    protected final HistorySessions sessions;
+    protected final ResponseCache responseCache;
 
-    public TaskHandler(TaskManager taskManager) {
+    public TaskHandler(TaskManager taskManager, HistorySessions sessions, ResponseCache responseCache) {
         this.taskManager = taskManager;
+        this.sessions = sessions;
+        this.responseCache = responseCache;
         gson = new GsonBuilder()
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapterFactory(new TaskTextAdapterFactory())
                 .registerTypeAdapter(Duration.class, new DurationAdapter())
                 .setPrettyPrinting()
                 .create();
@@ -69,18 +75,17 @@ public class TaskHandler extends BaseHttpHandler {
 
     protected void handleGet(String query, HttpExchange exchange) throws IOException {
         try {
-            String response;
             if (query == null || query.isEmpty()) {
                 List<Task> allTasks = taskManager.getAllTasks();
-                response = allTasks.stream()
+                String response = allTasks.stream()
                         .map(Task::toString)
                         .collect(Collectors.joining("\n"));
+                sendText(exchange, response, 200);
             } else {
                 int taskId = getTaskIdFromRequest(query);
-                Task task = taskManager.getTask(taskId);
-                response = task.toString();
+                Task task = viewTask(taskId, exchange);
+                sendJson(exchange, responseCache.body(task, Task::toString), 200);
             }
-            sendText(exchange, response, 200);
         } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException | URISyntaxException e) {
             handleErrorResponse(e, 400, exchange);
         } catch (NotFoundException e) {
@@ -88,6 +93,20 @@ public class TaskHandler extends BaseHttpHandler {
         }
     }
 
+    // Просмотр с заголовком сессии пишется в историю клиента, без него — в общую историю менеджера
+    private Task viewTask(int id, HttpExchange exchange) {
+        HistorySessions.Session session = sessions.of(exchange);
+        if (session == null) {
+            return taskManager.getTask(id);
+        }
+        Task task = taskManager.getTasksMap().get(id);
+        if (task == null) {
+            throw new NotFoundException("Задача с ID " + id + " не найдена.");
+        }
+        session.add(task);
+        return task;
+    }
+
     protected void handlePost(HttpExchange exchange) throws IOException {
         try {
             Task newTask = readTaskFromRequest(exchange);
@@ -97,6 +116,7 @@ public class TaskHandler extends BaseHttpHandler {
                 response = "Задача успешно добавлена с ID: " + generatedId;
             } else {
                 taskManager.updateTask(newTask);
+                responseCache.invalidate(newTask.getId());
                 response = "Задача с ID" + newTask.getId() + "обновлена.";
             }
             sendText(exchange, response, 201);
@@ -115,6 +135,7 @@ public class TaskHandler extends BaseHttpHandler {
             Task taskToUpdate = readTaskFromRequest(exchange);
             taskToUpdate.setId(taskId);
             taskManager.updateTask(taskToUpdate);
+            responseCache.invalidate(taskId);
             String response = "Задача с ID " + taskId + " обновлена.";
             sendText(exchange, response, 201);
         } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException | URISyntaxException
@@ -131,6 +152,7 @@ public class TaskHandler extends BaseHttpHandler {
         try {
             int taskIdToRemove = getTaskIdFromRequest(query);
             taskManager.deleteTask(taskIdToRemove);
+            responseCache.invalidate(taskIdToRemove);
             String response = "Задача с ID: " + taskIdToRemove + " удалена.";
             sendText(exchange, response, 200);
         } catch (JsonParseException | InvalidTaskIdException | IllegalArgumentException | URISyntaxException e) {
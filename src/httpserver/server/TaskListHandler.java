@@ -8,6 +8,7 @@ import exception.InvalidTaskIdException;
 import exception.NotFoundException;
 import httpserver.adapter.DurationAdapter;
 import httpserver.adapter.LocalDateTimeAdapter;
+import httpserver.adapter.TaskTextAdapterFactory;
 import manager.TaskManager;
 import task.Task;
 
@@ -21,6 +22,7 @@ public abstract class TaskListHandler extends BaseHttpHandler {
     private final Gson gson = new GsonBuilder()
             .registerTypeAdapter(Duration.class, new DurationAdapter())
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeAdapterFactory(new TaskTextAdapterFactory())
             .create();
 
     public TaskListHandler(TaskManager taskManager) {
@@ -0,0 +1,101 @@
+package manager;
+
+import task.Task;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/*
+ * Запись истории вне пути чтения. add и remove только кладут событие в неблокирующую очередь; когда
+ * накопится пакет, поток, успевший взять блокировку через tryLock, применяет к вложенной истории не больше
+ * batchSize событий, остальные идут дальше, не дожидаясь. Так у вложенной истории в каждый момент один
+ * потребитель, читатель платит за разбор очереди не больше одного пакета, а читатели задач не ждут друг друга.
+ * getHistory применяет весь остаток очереди под той же блокировкой, поэтому отставание незаметно вызывающему.
+ * Добавления и удаления идут одной очередью в порядке публикации. Просмотр, прочитанный до удаления задачи,
+ * но опубликованный после него, при разборе отбрасывается: задачи уже нет в менеджере, а удаление
+ * менеджер публикует только после снятия задачи с карты.
+ */
+public class AsyncHistoryManager implements HistoryManager {
+    static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final HistoryManager delegate;
+    private final int batchSize;
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private volatile IntFunction<Task> lookup;
+
+    // task == null — удаление id из истории
+    private record Event(Task task, int id) {
+    }
+
+    public AsyncHistoryManager(HistoryManager delegate) {
+        this(delegate, DEFAULT_BATCH_SIZE);
+    }
+
+    public AsyncHistoryManager(HistoryManager delegate, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Размер пакета истории должен быть положительным");
+        }
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void add(Task task) {
+        publish(new Event(task, task.getId()));
+    }
+
+    @Override
+    public void remove(int id) {
+        publish(new Event(null, id));
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        drainLock.lock();
+        try {
+            drain(Integer.MAX_VALUE);
+            return delegate.getHistory();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public void bind(IntFunction<Task> lookup) {
+        this.lookup = lookup;
+        delegate.bind(lookup);
+    }
+
+    private void publish(Event event) {
+        events.offer(event);
+        if (pending.incrementAndGet() >= batchSize && drainLock.tryLock()) {
+            try {
+                drain(batchSize);
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    // Вызывается только под drainLock
+    private void drain(int limit) {
+        IntFunction<Task> current = lookup;
+        Event event;
+        for (int applied = 0; applied < limit && (event = events.poll()) != null; applied++) {
+            pending.decrementAndGet();
+            if (event.task() != null) {
+                if (current == null || current.apply(event.id()) != null) {
+                    delegate.add(event.task());
+                }
+            } else {
+                delegate.remove(event.id());
+            }
+        }
+    }
+}
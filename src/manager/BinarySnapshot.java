@@ -0,0 +1,224 @@
+package manager;
+
+import exception.ManagerLoadException;
+import task.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Двоичный формат снимка.
+ * Заголовок, 16 байт: magic (int), версия (short), флаги (short), число записей (int), резерв (int).
+ * Запись: тег типа (byte), id (int), статус (byte), начало в секундах эпохи UTC (long),
+ * длительность в секундах (long), для эпика — окончание (long), для подзадачи — id эпика (int),
+ * затем имя и описание: длина в байтах (int, -1 для null) и байты UTF-8.
+ * Отсутствующее время записывается как Long.MIN_VALUE.
+ * С флагом FLAG_CHECKSUMS за записями идут CRC32C блоков (int каждая), размер блока (int) и число блоков (int).
+ */
+class BinarySnapshot {
+    static final int MAGIC = 0x4B4E4254;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final short FLAG_CHECKSUMS = 1;
+    private static final long NO_TIME = Long.MIN_VALUE;
+    // тег, id, статус, начало и длительность
+    private static final int FIXED_RECORD_SIZE = 1 + Integer.BYTES + 1 + Long.BYTES + Long.BYTES;
+    private static final Status[] STATUSES = Status.values();
+    private static final TaskType[] TYPES = TaskType.values();
+
+    private BinarySnapshot() {
+    }
+
+    static boolean isBinary(File file) {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения");
+        }
+    }
+
+    static void write(OutputStream outputStream, List<Task> view) throws IOException {
+        SnapshotChecksum.Output checksummed = new SnapshotChecksum.Output(outputStream);
+        DataOutputStream out = new DataOutputStream(checksummed);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(FLAG_CHECKSUMS);
+        out.writeInt(view.size());
+        out.writeInt(0);
+        for (Task task : view) {
+            out.writeByte(task.getType().ordinal());
+            out.writeInt(task.getId());
+            out.writeByte(task.getStatus().ordinal());
+            out.writeLong(toEpochSecond(task.getStartTime()));
+            out.writeLong(task.getDuration() != null ? task.getDuration().getSeconds() : 0);
+            if (task.getType() == TaskType.EPIC) {
+                out.writeLong(toEpochSecond(task.getEndTime()));
+            } else if (task.getType() == TaskType.SUBTASK) {
+                out.writeInt(((Subtask) task).getParentId());
+            }
+            writeString(out, task.getName());
+            writeString(out, task.getDescription());
+        }
+        out.flush();
+        int[] checksums = checksummed.finish();
+        DataOutputStream trailer = new DataOutputStream(outputStream);
+        for (int checksum : checksums) {
+            trailer.writeInt(checksum);
+        }
+        trailer.writeInt(SnapshotChecksum.BLOCK_SIZE);
+        trailer.writeInt(checksums.length);
+        trailer.flush();
+    }
+
+    static MappedByteBuffer map(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ManagerLoadException("Снимок слишком велик для отображения в память");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC) {
+                throw new ManagerLoadException("Неверный формат снимка");
+            }
+            short version = buffer.getShort(4);
+            if (version != VERSION) {
+                throw new ManagerLoadException("Неподдерживаемая версия снимка " + version);
+            }
+            return buffer;
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения двоичного снимка");
+        }
+    }
+
+    // Снимки без флага контрольных сумм загружаются без проверки
+    static void verify(ByteBuffer buffer) {
+        if ((buffer.getShort(6) & FLAG_CHECKSUMS) == 0) {
+            return;
+        }
+        try {
+            int limit = buffer.limit();
+            int blocks = buffer.getInt(limit - Integer.BYTES);
+            int blockSize = buffer.getInt(limit - 2 * Integer.BYTES);
+            long covered = limit - 2L * Integer.BYTES - (long) blocks * Integer.BYTES;
+            if (blocks < 0 || covered < HEADER_SIZE) {
+                throw new ManagerLoadException("Снимок повреждён: неверный блок контрольных сумм");
+            }
+            int[] checksums = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                checksums[i] = buffer.getInt((int) covered + i * Integer.BYTES);
+            }
+            SnapshotChecksum.verify(buffer, (int) covered, blockSize, checksums);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ManagerLoadException("Снимок повреждён: неверный блок контрольных сумм");
+        }
+    }
+
+    // Быстрый последовательный проход по длинам записей: смещения позволяют разбирать записи параллельно
+    static int[] recordOffsets(ByteBuffer buffer) {
+        int count = buffer.getInt(8);
+        int[] offsets = new int[count];
+        int position = HEADER_SIZE;
+        try {
+            for (int i = 0; i < count; i++) {
+                offsets[i] = position;
+                TaskType type = TYPES[buffer.get(position)];
+                position += FIXED_RECORD_SIZE;
+                if (type == TaskType.EPIC) {
+                    position += Long.BYTES;
+                } else if (type == TaskType.SUBTASK) {
+                    position += Integer.BYTES;
+                }
+                for (int field = 0; field < 2; field++) {
+                    int length = buffer.getInt(position);
+                    position += Integer.BYTES + Math.max(length, 0);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new ManagerLoadException("Ошибка чтения двоичного снимка");
+        }
+        return offsets;
+    }
+
+    // С ленивым хранилищем тексты не читаются: задача запоминает смещение имени в снимке
+    static List<Task> readRecords(ByteBuffer source, int[] offsets, int from, int to, LazyTextStore lazyText) {
+        ByteBuffer buffer = source.duplicate();
+        List<Task> result = new ArrayList<>(to - from);
+        byte[] scratch = new byte[4096];
+        try {
+            for (int i = from; i < to; i++) {
+                buffer.position(offsets[i]);
+                TaskType type = TYPES[buffer.get()];
+                int id = buffer.getInt();
+                Status status = STATUSES[buffer.get()];
+                LocalDateTime startTime = fromEpochSecond(buffer.getLong());
+                Duration duration = Duration.ofSeconds(buffer.getLong());
+                LocalDateTime endTime = type == TaskType.EPIC ? fromEpochSecond(buffer.getLong()) : null;
+                int parentId = type == TaskType.SUBTASK ? buffer.getInt() : 0;
+                int textOffset = buffer.position();
+                String name = null;
+                String description = null;
+                if (lazyText == null) {
+                    name = readString(buffer, scratch);
+                    description = readString(buffer, scratch);
+                }
+                Task task = switch (type) {
+                    case TASK -> new Task(id, name, description, status, startTime, duration);
+                    case SUBTASK -> new Subtask(id, name, description, status, startTime, duration, parentId);
+                    case EPIC -> new Epic(id, name, description, status, startTime, duration, endTime);
+                };
+                if (lazyText != null) {
+                    task.setTextSource(lazyText, textOffset);
+                }
+                result.add(task);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new ManagerLoadException("Ошибка чтения двоичного снимка");
+        }
+        return result;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime == null ? NO_TIME : dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime fromEpochSecond(long epochSecond) {
+        return epochSecond == NO_TIME ? null : LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,53 @@
+package manager;
+
+import java.time.Duration;
+
+// Условия, при которых журнал сворачивается в новый снимок
+public class CompactionPolicy {
+    private static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    private final long maxLogBytes;
+    private final int maxLogRecords;
+    private final Duration idleTimeout;
+    private final Duration checkInterval;
+
+    public CompactionPolicy(long maxLogBytes, int maxLogRecords, Duration idleTimeout) {
+        this(maxLogBytes, maxLogRecords, idleTimeout, DEFAULT_CHECK_INTERVAL);
+    }
+
+    public CompactionPolicy(long maxLogBytes, int maxLogRecords, Duration idleTimeout, Duration checkInterval) {
+        if (maxLogBytes <= 0 || maxLogRecords <= 0) {
+            throw new IllegalArgumentException("Пороги сжатия должны быть положительными");
+        }
+        this.maxLogBytes = maxLogBytes;
+        this.maxLogRecords = maxLogRecords;
+        this.idleTimeout = idleTimeout;
+        this.checkInterval = checkInterval;
+    }
+
+    public long getMaxLogBytes() {
+        return maxLogBytes;
+    }
+
+    public int getMaxLogRecords() {
+        return maxLogRecords;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public Duration getCheckInterval() {
+        return checkInterval;
+    }
+
+    // idleTimeout == null отключает сжатие по простою
+    boolean shouldCompact(long logBytes, int logRecords, Duration idle) {
+        if (logRecords == 0) {
+            return false;
+        }
+        return logBytes >= maxLogBytes
+                || logRecords >= maxLogRecords
+                || (idleTimeout != null && idle.compareTo(idleTimeout) >= 0);
+    }
+}
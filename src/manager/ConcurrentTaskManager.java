@@ -0,0 +1,526 @@
+package manager;
+
+import exception.ManagerValidatePriorityException;
+import exception.NotFoundException;
+import task.Epic;
+import task.Subtask;
+import task.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/*
+ * Менеджер для многопоточного сервера. Задачи лежат в ConcurrentHashMap, id выдаются блоками на поток.
+ * Изменения одной задачи или одного эпика вместе с его подзадачами и сводкой идут под полосатой
+ * блокировкой по id, поэтому работа с разными эпиками не мешает друг другу. Индекс по времени
+ * общий: проверка пересечений и вставка выполняются под его блокировкой. Писатель только помечает
+ * снимок расписания устаревшим, а первый читатель после изменения строит его один раз за O(n) и
+ * публикует через volatile-поле; остальные читатели расписания, страниц и свободных окон читают снимок
+ * без блокировок. Так серия записей без чтений между ними стоит O(log n) на запись, а не O(n).
+ * Подзадачи эпика читаются из снимков, которые сбрасываются при изменении эпика. История пишется
+ * через AsyncHistoryManager: чтение задачи только публикует событие и не ждёт других читателей.
+ * Порядок захвата: блокировка id, затем индекс по времени. Массовые удаления атомарны для каждой
+ * задачи, но не для доски целиком.
+ */
+public class ConcurrentTaskManager implements TaskManager {
+    private static final int STRIPES = 256;
+
+    private final Map<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final Map<Integer, Subtask> subtasks = new ConcurrentHashMap<>();
+    private final Map<Integer, Epic> epics = new ConcurrentHashMap<>();
+    private final Map<Integer, EpicAggregate> epicAggregates = new ConcurrentHashMap<>();
+    private final IdAllocator idAllocator = new IdAllocator(IdAllocator.DEFAULT_BLOCK_SIZE);
+    private final HistoryManager historyManager;
+    private final TimeIndex timeIndex = new TimeIndex();
+    private final ReentrantLock timeLock = new ReentrantLock();
+    // Снимок индекса по времени; null — индекс менялся после последнего построения
+    private volatile TimeIndex.Snapshot timeSnapshot;
+    // Снимки подзадач эпиков; сбрасываются под блокировкой эпика при любом изменении его подзадач
+    private final Map<Integer, List<Subtask>> subtaskSnapshots = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[STRIPES];
+    // Пакет изменений принадлежит потоку: эпики, затронутые внутри пакета, пересчитываются при его завершении
+    private final ThreadLocal<Set<Integer>> pendingEpics = new ThreadLocal<>();
+
+    public ConcurrentTaskManager(HistoryManager historyManager) {
+        this.historyManager = historyManager instanceof AsyncHistoryManager
+                ? historyManager : new AsyncHistoryManager(historyManager);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.historyManager.bind(this::findTask);
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return new ArrayList<>(tasks.values());
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        return new ArrayList<>(subtasks.values());
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        return new ArrayList<>(epics.values());
+    }
+
+    @Override
+    public List<Subtask> getEpicSubtasks(int epicId) {
+        List<Subtask> snapshot = subtaskSnapshots.get(epicId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (lockOf(epicId)) {
+            snapshot = List.copyOf(collectSubtasks(requireEpic(epicId)));
+            subtaskSnapshots.put(epicId, snapshot);
+            return snapshot;
+        }
+    }
+
+    @Override
+    public Task getTask(int id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            throw new NotFoundException("Задача с ID " + id + " не найдена.");
+        }
+        addToHistory(task);
+        return task;
+    }
+
+    @Override
+    public Subtask getSubtask(int id) {
+        Subtask subtask = subtasks.get(id);
+        if (subtask == null) {
+            throw new NotFoundException("Подзадача с ID " + id + " не найдена.");
+        }
+        addToHistory(subtask);
+        return subtask;
+    }
+
+    // Поля эпика меняются под его блокировкой, захват при чтении делает их изменения видимыми
+    @Override
+    public Epic getEpic(int id) {
+        Epic epic;
+        synchronized (lockOf(id)) {
+            epic = epics.get(id);
+        }
+        if (epic == null) {
+            throw new NotFoundException("Эпическая задача с ID " + id + " не найдена.");
+        }
+        addToHistory(epic);
+        return epic;
+    }
+
+    @Override
+    public Subtask getSubtaskWithoutHistory(int subtaskId) {
+        return subtasks.get(subtaskId);
+    }
+
+    @Override
+    public int addNewTask(Task task) {
+        int taskId = idAllocator.next();
+        task.setId(taskId);
+        if (task.getStartTime() == null) {
+            tasks.put(taskId, task);
+            return taskId;
+        }
+        timeLock.lock();
+        try {
+            checkForTimeConflicts(task);
+            timeIndex.add(task);
+            tasks.put(taskId, task);
+            timeSnapshot = null;
+        } finally {
+            timeLock.unlock();
+        }
+        return taskId;
+    }
+
+    @Override
+    public int addNewEpic(Epic epic) {
+        int epicId = idAllocator.next();
+        epic.setId(epicId);
+        epics.put(epicId, epic);
+        return epicId;
+    }
+
+    @Override
+    public int addNewSubtask(Subtask subtask) {
+        int subtaskId = idAllocator.next();
+        subtask.setId(subtaskId);
+        synchronized (lockOf(subtask.getParentId())) {
+            Epic epic = requireEpic(subtask.getParentId());
+            reindex(null, subtask);
+            subtasks.put(subtaskId, subtask);
+            epic.addSubtaskId(subtaskId);
+            subtaskSnapshots.remove(epic.getId());
+            aggregateOf(epic).put(subtask);
+            refreshEpic(epic);
+        }
+        return subtaskId;
+    }
+
+    @Override
+    public Task updateTask(Task task) {
+        synchronized (lockOf(task.getId())) {
+            Task previous = tasks.get(task.getId());
+            if (previous == null) {
+                throw new NotFoundException("Задача с ID" + task.getId() + "не найдена.");
+            }
+            reindex(previous, task);
+            tasks.put(task.getId(), task);
+        }
+        return task;
+    }
+
+    @Override
+    public Epic updateEpic(Epic epic) {
+        synchronized (lockOf(epic.getId())) {
+            if (!epics.containsKey(epic.getId())) {
+                throw new NotFoundException("Эпик с ID " + epic.getId() + " не найден.");
+            }
+            epic.updateEpic(this);
+            epics.put(epic.getId(), epic);
+            subtaskSnapshots.remove(epic.getId());
+        }
+        return epic;
+    }
+
+    @Override
+    public Subtask updateSubtask(Subtask subtask) {
+        synchronized (lockOf(subtask.getParentId())) {
+            Subtask previous = subtasks.get(subtask.getId());
+            if (previous == null || previous.getParentId() != subtask.getParentId()) {
+                throw new NotFoundException("Подзадача с ID" + subtask.getId() + "не найдена.");
+            }
+            Epic epic = requireEpic(subtask.getParentId());
+            reindex(previous, subtask);
+            subtasks.put(subtask.getId(), subtask);
+            subtaskSnapshots.remove(epic.getId());
+            aggregateOf(epic).put(subtask);
+            refreshEpic(epic);
+        }
+        return subtask;
+    }
+
+    @Override
+    public Task deleteTask(int id) {
+        synchronized (lockOf(id)) {
+            getTask(id);
+            unindex(id);
+            tasks.remove(id);
+        }
+        return null;
+    }
+
+    @Override
+    public void deleteEpic(int id) {
+        synchronized (lockOf(id)) {
+            Epic epic = requireEpic(id);
+            removeSubtasksOf(epic);
+            epics.remove(id);
+            epicAggregates.remove(id);
+            subtaskSnapshots.remove(id);
+        }
+    }
+
+    @Override
+    public void deleteSubtask(int id) {
+        Subtask subtask = subtasks.get(id);
+        if (subtask == null) {
+            throw new NotFoundException("Подзадача с ID " + id + " не найдена.");
+        }
+        synchronized (lockOf(subtask.getParentId())) {
+            // Пока ждали блокировку эпика, подзадачу могли удалить или перенести в другой эпик
+            Subtask current = subtasks.get(id);
+            if (current == null || current.getParentId() != subtask.getParentId()) {
+                throw new NotFoundException("Подзадача с ID " + id + " не найдена.");
+            }
+            Epic epic = epics.get(subtask.getParentId());
+            if (epic == null) {
+                throw new NotFoundException("Эпик для данной подзадачи не найден.");
+            }
+            unindex(id);
+            // Удаление публикуется после снятия с карты: просмотр, опубликованный позже, уже не найдёт подзадачу
+            subtasks.remove(id);
+            removeFromHistory(id);
+            epic.removeSubtaskId(id);
+            subtaskSnapshots.remove(epic.getId());
+            aggregateOf(epic).remove(id);
+            refreshEpic(epic);
+        }
+    }
+
+    @Override
+    public void deleteTasks() {
+        for (int id : new ArrayList<>(tasks.keySet())) {
+            synchronized (lockOf(id)) {
+                if (tasks.remove(id) != null) {
+                    unindex(id);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void deleteSubtasks() {
+        for (int epicId : new ArrayList<>(epics.keySet())) {
+            synchronized (lockOf(epicId)) {
+                Epic epic = epics.get(epicId);
+                if (epic == null) {
+                    continue;
+                }
+                removeSubtasksOf(epic);
+                epicAggregates.remove(epicId);
+                refreshEpic(epic);
+            }
+        }
+    }
+
+    @Override
+    public void deleteEpics() {
+        for (int epicId : new ArrayList<>(epics.keySet())) {
+            try {
+                deleteEpic(epicId);
+            } catch (NotFoundException e) {
+                // эпик уже удалён другим потоком
+            }
+        }
+    }
+
+    @Override
+    public Map<Integer, Task> getTasksMap() {
+        return tasks;
+    }
+
+    @Override
+    public Map<Integer, Epic> getEpicsMap() {
+        return epics;
+    }
+
+    @Override
+    public Map<Integer, Subtask> getSubtasksMap() {
+        return subtasks;
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return historyManager.getHistory();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        TimeIndex.Snapshot snapshot = currentSnapshot();
+        if (snapshot.isEmpty()) {
+            throw new NotFoundException("Список сортировки пуст!");
+        }
+        return snapshot.getAll();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit, Integer after) {
+        return currentSnapshot().getPage(from, to, limit, after);
+    }
+
+    @Override
+    public boolean isWindowFree(LocalDateTime start, Duration duration) {
+        return currentSnapshot().findConflict(start, start.plus(duration)) == null;
+    }
+
+    @Override
+    public LocalDateTime findFreeWindow(LocalDateTime from, Duration duration) {
+        return currentSnapshot().findFreeWindow(from, duration);
+    }
+
+    // Календарь слотов ускоряет только проверку пересечений у писателей, снимок от него не зависит
+    public void enableSlotCalendar(Duration slotSize) {
+        timeLock.lock();
+        try {
+            timeIndex.enableSlotCalendar(slotSize);
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    // Как и в InMemoryTaskManager, это не транзакция: другие потоки видят изменения пакета по мере их применения
+    @Override
+    public void inBatch(Consumer<TaskManager> batch) {
+        if (pendingEpics.get() != null) {
+            batch.accept(this);
+            return;
+        }
+        Set<Integer> pending = new LinkedHashSet<>();
+        pendingEpics.set(pending);
+        try {
+            batch.accept(this);
+        } finally {
+            pendingEpics.remove();
+            for (int epicId : pending) {
+                synchronized (lockOf(epicId)) {
+                    Epic epic = epics.get(epicId);
+                    if (epic != null) {
+                        recalculateEpic(epic);
+                    }
+                }
+            }
+        }
+    }
+
+    private Object lockOf(int id) {
+        return locks[Math.floorMod(id, STRIPES)];
+    }
+
+    private Epic requireEpic(int epicId) {
+        Epic epic = epics.get(epicId);
+        if (epic == null) {
+            throw new NotFoundException("Эпик с ID " + epicId + " не найден.");
+        }
+        return epic;
+    }
+
+    private List<Subtask> collectSubtasks(Epic epic) {
+        List<Subtask> epicSubtasks = new ArrayList<>(epic.getSubtaskIdSet().size());
+        epic.getSubtaskIdSet().forEachInt(subtaskId -> {
+            Subtask subtask = subtasks.get(subtaskId);
+            if (subtask != null) {
+                epicSubtasks.add(subtask);
+            }
+        });
+        return epicSubtasks;
+    }
+
+    // Проверка пересечений и замена в индексе — один шаг под блокировкой записи
+    private void reindex(Task previous, Task task) {
+        if (previous == null && task.getStartTime() == null) {
+            return;
+        }
+        timeLock.lock();
+        try {
+            if (task.getStartTime() != null) {
+                checkForTimeConflicts(task);
+            }
+            if (previous != null) {
+                timeIndex.remove(previous.getId());
+            }
+            if (task.getStartTime() != null) {
+                timeIndex.add(task);
+            }
+            timeSnapshot = null;
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    // Удаляет подзадачи по id из эпика: объект подзадачи мог сменить id после повторного добавления.
+    // Все подзадачи снимаются с индекса в одной секции
+    private void removeSubtasksOf(Epic epic) {
+        int[] subtaskIds = epic.getSubtaskIdSet().toIntArray();
+        timeLock.lock();
+        try {
+            for (int subtaskId : subtaskIds) {
+                timeIndex.remove(subtaskId);
+            }
+            timeSnapshot = null;
+        } finally {
+            timeLock.unlock();
+        }
+        for (int subtaskId : subtaskIds) {
+            subtasks.remove(subtaskId);
+        }
+        epic.clearSubtaskIds();
+        subtaskSnapshots.remove(epic.getId());
+    }
+
+    private void unindex(int id) {
+        timeLock.lock();
+        try {
+            timeIndex.remove(id);
+            timeSnapshot = null;
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    // Снимок строится заново только при первом чтении после изменения; остальные читатели его уже видят
+    private TimeIndex.Snapshot currentSnapshot() {
+        TimeIndex.Snapshot snapshot = timeSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        timeLock.lock();
+        try {
+            snapshot = timeSnapshot;
+            if (snapshot == null) {
+                snapshot = timeIndex.snapshot();
+                timeSnapshot = snapshot;
+            }
+            return snapshot;
+        } finally {
+            timeLock.unlock();
+        }
+    }
+
+    private void checkForTimeConflicts(Task task) {
+        if (timeIndex.findConflict(task.getStartTime(), task.getEndTime(), task) != null) {
+            System.out.println("Неверное время или продолжительность у задачи " + task);
+            throw new ManagerValidatePriorityException("Невозможно добавить задачу из-за пересечений с уже имеющимися задачами");
+        }
+    }
+
+    // Вызывается под блокировкой эпика
+    private EpicAggregate aggregateOf(Epic epic) {
+        EpicAggregate aggregate = epicAggregates.get(epic.getId());
+        if (aggregate == null) {
+            aggregate = new EpicAggregate();
+            for (Subtask subtask : collectSubtasks(epic)) {
+                aggregate.put(subtask);
+            }
+            epicAggregates.put(epic.getId(), aggregate);
+        }
+        return aggregate;
+    }
+
+    // Вызывается под блокировкой эпика; внутри пакета только запоминает эпик
+    private void refreshEpic(Epic epic) {
+        Set<Integer> pending = pendingEpics.get();
+        if (pending != null) {
+            pending.add(epic.getId());
+        } else {
+            recalculateEpic(epic);
+        }
+    }
+
+    private void recalculateEpic(Epic epic) {
+        EpicAggregate aggregate = aggregateOf(epic);
+        epic.setStatus(aggregate.getStatus());
+        epic.setStartTime(aggregate.getStartTime());
+        epic.setEndTime(aggregate.getEndTime());
+        epic.setDuration(aggregate.getDuration());
+    }
+
+    // Текущая версия задачи любого типа без записи в историю
+    private Task findTask(int id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            task = subtasks.get(id);
+        }
+        return task != null ? task : epics.get(id);
+    }
+
+    private void addToHistory(Task task) {
+        historyManager.add(task);
+    }
+
+    private void removeFromHistory(int id) {
+        historyManager.remove(id);
+    }
+}
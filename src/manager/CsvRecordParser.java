@@ -0,0 +1,314 @@
+package manager;
+
+import exception.ManagerLoadException;
+import task.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/*
+ * Курсорный разбор записей CSV прямо из байтов UTF-8 без промежуточных строк и массивов:
+ * новые объекты создаются только для имени, описания, времени и самой задачи.
+ * Поля в кавычках могут содержать запятые, переводы строк и удвоенные кавычки.
+ * Отсутствующий текст записывается как null без кавычек, а строка "null" — только в кавычках.
+ */
+class CsvRecordParser {
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final Status[] STATUSES = Status.values();
+    private static final byte[][] STATUS_NAMES = new byte[STATUSES.length][];
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final byte[][] TYPE_NAMES = new byte[TYPES.length][];
+
+    static {
+        for (int i = 0; i < STATUSES.length; i++) {
+            STATUS_NAMES[i] = STATUSES[i].toString().getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            TYPE_NAMES[i] = TYPES[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final byte[] bytes;
+    private final int end;
+    private int position;
+
+    CsvRecordParser(byte[] bytes, int from, int to) {
+        this.bytes = bytes;
+        this.position = from;
+        this.end = to;
+    }
+
+    int position() {
+        return position;
+    }
+
+    // Пропускает пустые строки и сообщает, осталась ли ещё запись
+    boolean hasNext() {
+        while (position < end && (bytes[position] == '\n' || bytes[position] == '\r')) {
+            position++;
+        }
+        return position < end;
+    }
+
+    // Поглощает префикс записи, если он совпадает
+    boolean consume(byte[] prefix) {
+        if (!regionEquals(position, end, prefix)) {
+            return false;
+        }
+        position += prefix.length;
+        return true;
+    }
+
+    Task readTask() {
+        int id = readInt();
+        TaskType type = readType();
+        String name = readString();
+        Status status = readStatus();
+        String description = readString();
+        LocalDateTime startTime = readDateTime();
+        Duration duration = Duration.ofMinutes(readLong());
+        LocalDateTime endTime = readDateTime();
+        int parentId = type == TaskType.SUBTASK ? readInt() : 0;
+        endRecord();
+        return switch (type) {
+            case TASK -> new Task(id, name, description, status, startTime, duration);
+            case SUBTASK -> new Subtask(id, name, description, status, startTime, duration, parentId);
+            case EPIC -> new Epic(id, name, description, status, startTime, duration, endTime);
+        };
+    }
+
+    int readInt() {
+        long value = readLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw error("Число вне диапазона");
+        }
+        return (int) value;
+    }
+
+    // "null" читается как 0, как и в прежнем формате длительности
+    long readLong() {
+        int fieldEnd = fieldEnd();
+        if (regionEquals(position, fieldEnd, NULL) && fieldEnd - position == NULL.length) {
+            position = fieldEnd;
+            skipSeparator();
+            return 0;
+        }
+        boolean negative = position < fieldEnd && bytes[position] == '-';
+        int i = negative ? position + 1 : position;
+        if (i == fieldEnd) {
+            throw error("Ожидалось число");
+        }
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw error("Ожидалось число");
+            }
+            value = value * 10 + digit;
+        }
+        position = fieldEnd;
+        skipSeparator();
+        return negative ? -value : value;
+    }
+
+    TaskType readType() {
+        int fieldEnd = fieldEnd();
+        for (int i = 0; i < TYPES.length; i++) {
+            if (fieldEnd - position == TYPE_NAMES[i].length && regionEquals(position, fieldEnd, TYPE_NAMES[i])) {
+                position = fieldEnd;
+                skipSeparator();
+                return TYPES[i];
+            }
+        }
+        throw error("Неожиданный тип задачи");
+    }
+
+    private Status readStatus() {
+        int fieldEnd = fieldEnd();
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (fieldEnd - position == STATUS_NAMES[i].length && regionEquals(position, fieldEnd, STATUS_NAMES[i])) {
+                position = fieldEnd;
+                skipSeparator();
+                return STATUSES[i];
+            }
+        }
+        throw error("Неожиданное значение статуса");
+    }
+
+    private String readString() {
+        if (position < end && bytes[position] == '"') {
+            return readQuotedString();
+        }
+        int fieldEnd = fieldEnd();
+        if (fieldEnd - position == NULL.length && regionEquals(position, fieldEnd, NULL)) {
+            position = fieldEnd;
+            skipSeparator();
+            return null;
+        }
+        String value = new String(bytes, position, fieldEnd - position, StandardCharsets.UTF_8);
+        position = fieldEnd;
+        skipSeparator();
+        return value;
+    }
+
+    private String readQuotedString() {
+        int start = ++position;
+        boolean escaped = false;
+        while (true) {
+            if (position >= end) {
+                throw error("Незакрытая кавычка");
+            }
+            if (bytes[position] == '"') {
+                if (position + 1 < end && bytes[position + 1] == '"') {
+                    escaped = true;
+                    position += 2;
+                    continue;
+                }
+                break;
+            }
+            position++;
+        }
+        String value = new String(bytes, start, position - start, StandardCharsets.UTF_8);
+        position++;
+        skipSeparator();
+        return escaped ? value.replace("\"\"", "\"") : value;
+    }
+
+    // Разбирает вывод LocalDateTime.toString(): uuuu-MM-ddTHH:mm[:ss[.fraction]] или "null"
+    private LocalDateTime readDateTime() {
+        int fieldEnd = fieldEnd();
+        if (fieldEnd - position == NULL.length && regionEquals(position, fieldEnd, NULL)) {
+            position = fieldEnd;
+            skipSeparator();
+            return null;
+        }
+        int year = digits(position, 4);
+        expect(position + 4, '-');
+        int month = digits(position + 5, 2);
+        expect(position + 7, '-');
+        int day = digits(position + 8, 2);
+        expect(position + 10, 'T');
+        int hour = digits(position + 11, 2);
+        expect(position + 13, ':');
+        int minute = digits(position + 14, 2);
+        int second = 0;
+        int nano = 0;
+        int i = position + 16;
+        if (i < fieldEnd) {
+            expect(i, ':');
+            second = digits(i + 1, 2);
+            i += 3;
+            if (i < fieldEnd) {
+                expect(i, '.');
+                int scale = 100_000_000;
+                for (i++; i < fieldEnd; i++, scale /= 10) {
+                    nano += digits(i, 1) * scale;
+                }
+            }
+        }
+        position = fieldEnd;
+        skipSeparator();
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+        } catch (RuntimeException e) {
+            throw error("Неверная дата");
+        }
+    }
+
+    // Завершает запись: допускает пустое последнее поле после запятой
+    void endRecord() {
+        if (position < end && bytes[position] == '\r') {
+            position++;
+        }
+        if (position < end && bytes[position] != '\n') {
+            throw error("Лишние поля в записи");
+        }
+        if (position < end) {
+            position++;
+        }
+    }
+
+    // Переходит к началу следующей записи с учётом кавычек
+    void skipRecord() {
+        boolean quoted = false;
+        while (position < end) {
+            byte b = bytes[position++];
+            if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted) {
+                return;
+            }
+        }
+    }
+
+    private int fieldEnd() {
+        int i = position;
+        while (i < end && bytes[i] != ',' && bytes[i] != '\n' && bytes[i] != '\r') {
+            i++;
+        }
+        return i;
+    }
+
+    private void skipSeparator() {
+        if (position < end && bytes[position] == ',') {
+            position++;
+        }
+    }
+
+    private int digits(int from, int count) {
+        if (from + count > end) {
+            throw error("Неверная дата");
+        }
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw error("Неверная дата");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private void expect(int at, char symbol) {
+        if (at >= end || bytes[at] != symbol) {
+            throw error("Неверная дата");
+        }
+    }
+
+    private boolean regionEquals(int from, int to, byte[] expected) {
+        if (to - from < expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (bytes[from + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ManagerLoadException error(String message) {
+        return new ManagerLoadException(message + " в позиции " + position);
+    }
+
+    // Экранирует поле по правилам CSV, если в нём есть запятая, кавычка или перевод строки
+    static void appendField(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        needsQuotes |= value.equals("null");
+        if (!needsQuotes) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
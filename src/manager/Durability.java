@@ -0,0 +1,12 @@
+package manager;
+
+public enum Durability {
+    // Запись на потоке вызова без fsync — поведение по умолчанию
+    SYNCHRONOUS,
+    // Запись и fsync на потоке вызова после каждой операции
+    FSYNC_PER_OPERATION,
+    // Фоновый поток пишет накопленные изменения и делает fsync раз в интервал
+    GROUP_COMMIT,
+    // Фоновый поток пишет изменения после паузы в мутациях, сброс на диск остаётся за ОС
+    OS_BUFFERED
+}
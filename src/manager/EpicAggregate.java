@@ -0,0 +1,83 @@
+package manager;
+
+import task.Status;
+import task.Subtask;
+import util.IntObjectMap;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.TreeMap;
+
+/*
+ * Сводка подзадач эпика: счётчики статусов, сумма длительностей и мультимножества начал и окончаний.
+ * Вклад каждой подзадачи запоминается при добавлении, поэтому замена и удаление подзадачи
+ * стоят O(log n) и не зависят от того, менялся ли сам объект подзадачи.
+ */
+class EpicAggregate {
+    private record Contribution(Status status, LocalDateTime start, LocalDateTime end, Duration duration) {
+    }
+
+    private final IntObjectMap<Contribution> contributions = new IntObjectMap<>();
+    private final TreeMap<LocalDateTime, Integer> starts = new TreeMap<>();
+    private final TreeMap<LocalDateTime, Integer> ends = new TreeMap<>();
+    private int inProgress;
+    private int done;
+    private Duration duration = Duration.ZERO;
+
+    void put(Subtask subtask) {
+        remove(subtask.getId());
+        Contribution contribution = new Contribution(subtask.getStatus(), subtask.getStartTime(),
+                subtask.getEndTime(), subtask.getDuration());
+        contributions.put(subtask.getId(), contribution);
+        apply(contribution, 1);
+    }
+
+    void remove(int subtaskId) {
+        Contribution contribution = contributions.remove(subtaskId);
+        if (contribution != null) {
+            apply(contribution, -1);
+        }
+    }
+
+    // Правила прежние: все подзадачи выполнены — DONE, есть выполняемая — IN_PROGRESS, иначе NEW
+    Status getStatus() {
+        if (contributions.isEmpty()) {
+            return Status.NEW;
+        }
+        if (done == contributions.size()) {
+            return Status.DONE;
+        }
+        return inProgress > 0 ? Status.IN_PROGRESS : Status.NEW;
+    }
+
+    LocalDateTime getStartTime() {
+        return starts.isEmpty() ? null : starts.firstKey();
+    }
+
+    LocalDateTime getEndTime() {
+        return ends.isEmpty() ? null : ends.lastKey();
+    }
+
+    Duration getDuration() {
+        return duration;
+    }
+
+    private void apply(Contribution contribution, int sign) {
+        if (contribution.status() == Status.DONE) {
+            done += sign;
+        } else if (contribution.status() == Status.IN_PROGRESS) {
+            inProgress += sign;
+        }
+        if (contribution.duration() != null) {
+            duration = sign > 0 ? duration.plus(contribution.duration()) : duration.minus(contribution.duration());
+        }
+        count(starts, contribution.start(), sign);
+        count(ends, contribution.end(), sign);
+    }
+
+    private static void count(TreeMap<LocalDateTime, Integer> times, LocalDateTime time, int sign) {
+        if (time != null) {
+            times.merge(time, sign, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+}
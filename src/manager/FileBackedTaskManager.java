@@ -3,71 +3,417 @@ package manager;
 import exception.ManagerLoadException;
 import exception.ManagerSaveException;
 import task.*;
+import util.IntObjectMap;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.util.Optional;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public class FileBackedTaskManager extends InMemoryTaskManager implements Closeable {
+    private static final String PUT = "PUT";
+    private static final String DELETE = "DEL";
+    private static final String CLEAR = "CLR";
+    private static final byte[] PUT_PREFIX = (PUT + ',').getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELETE_PREFIX = (DELETE + ',').getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLEAR_PREFIX = (CLEAR + ',').getBytes(StandardCharsets.US_ASCII);
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
     private final File saveFile;
+    private final StorageOptions options;
+    private final TaskJournal journal;
+    private final WriteBehindPersister persister;
+    private final SegmentStore segments;
+    private final LazyTextStore.Cache textCache;
+    // Мутации и снятие точки сжатия взаимоисключаются, запись самого снимка идёт без блокировки писателей
+    private final Object lock = new Object();
+    private final Object compactionLock = new Object();
+    private SnapshotCompactor compactor;
+    private final List<String> pendingRecords = new ArrayList<>();
+    private boolean dirty;
+    // Номер последней мутации и номер последней записанной на диск, для future из flush()
+    private long mutationSequence;
+    private volatile long persistedSequence;
+    private final LoadReport loadReport = new LoadReport();
+    // Загрузчик откатился на предыдущий снимок доски, и поверх него нужно накатить отложенный журнал
+    private boolean rolledBack;
 
     public FileBackedTaskManager(File saveFile) {
-        super(Managers.getDefaultHistory());
+        this(saveFile, new StorageOptions());
+    }
+
+    // В режиме журнала мутации дописываются в файл <saveFile>.log вместо полной перезаписи снимка
+    public FileBackedTaskManager(File saveFile, boolean journaled) {
+        this(saveFile, new StorageOptions().setJournaled(journaled));
+    }
+
+    public FileBackedTaskManager(File saveFile, StorageOptions options) {
+        super(Managers.getDefaultHistory(), new IdAllocator(options.getIdBlockSize(),
+                mark -> writeIdMark(saveFile, mark, options.isFsync())));
         this.saveFile = saveFile;
+        this.options = options;
+        this.journal = options.isJournaled() ? new TaskJournal(journalFile(saveFile)) : null;
+        this.persister = options.isWriteBehind() ? new WriteBehindPersister(options) : null;
+        this.segments = options.getSegmentSize() > 0
+                ? new SegmentStore(segmentDirectory(saveFile), options.getSegmentSize())
+                : null;
+        this.textCache = options.getLazyTextCacheSize() > 0
+                ? new LazyTextStore.Cache(options.getLazyTextCacheSize())
+                : null;
     }
 
     public static FileBackedTaskManager loadFromFile(File saveFile) {
+        return loadFromFile(saveFile, new StorageOptions());
+    }
+
+    public static FileBackedTaskManager loadFromFile(File saveFile, boolean journaled) {
+        return loadFromFile(saveFile, new StorageOptions().setJournaled(journaled));
+    }
+
+    public static FileBackedTaskManager loadFromFile(File saveFile, StorageOptions options) {
         if (!saveFile.exists()) {
             throw new ManagerLoadException("Файла не существует.");
         }
-        FileBackedTaskManager backedTaskManager = new FileBackedTaskManager(saveFile);
-        try (BufferedReader br = Files.newBufferedReader(saveFile.toPath())) {
-            String line = br.readLine();
-            while (br.ready()) {
-                line = br.readLine();
-                if (line.isEmpty()) {
-                    break;
+        FileBackedTaskManager backedTaskManager = new FileBackedTaskManager(saveFile, options);
+        backedTaskManager.idAllocator.advanceTo(readIdMark(saveFile));
+        boolean monolithic = backedTaskManager.readSnapshot();
+        backedTaskManager.replayJournal();
+        backedTaskManager.migrateLayout(monolithic);
+        return backedTaskManager;
+    }
+
+    // Разбор записей идёт параллельно, связывание подзадач с эпиками — одним проходом в исходном порядке.
+    // Возвращает true, если записи нашлись в общем файле снимка
+    private boolean readSnapshot() {
+        List<Task> loaded = new ArrayList<>(readSnapshotOrPrevious(saveFile));
+        boolean monolithic = !loaded.isEmpty();
+        List<File> segmentFiles = new SegmentStore(segmentDirectory(saveFile), 1).files();
+        for (File segmentFile : segmentFiles) {
+            loaded.addAll(readSnapshotOrPrevious(segmentFile));
+        }
+        long started = System.nanoTime();
+        if (monolithic && !segmentFiles.isEmpty()) {
+            // Смена раскладки прервалась: эпики должны попасть в менеджер раньше своих подзадач
+            loaded.sort(Comparator.comparing(Task::getType));
+        }
+        loaded.forEach(this::addTaskFromFile);
+        if (segments != null) {
+            loaded.forEach(task -> segments.index(task.getType(), task.getId()));
+        }
+        loadReport.setLink(System.nanoTime() - started);
+        return monolithic;
+    }
+
+    private List<Task> readSnapshotOrPrevious(File file) {
+        try {
+            return readSnapshot(file);
+        } catch (ManagerLoadException e) {
+            File previous = previousSnapshotFile(file);
+            if (!previous.exists()) {
+                throw e;
+            }
+            // В режиме журнала записи между поколениями снимка лежат только в отложенном журнале доски;
+            // для сегментов или без такого журнала откат молча потерял бы мутации
+            if (journal != null && (!file.equals(saveFile) || !retainedJournalFile(saveFile).exists())) {
+                throw new ManagerLoadException("Снимок " + file.getName() + " не прочитан (" + e.getMessage()
+                        + "), а откат на предыдущий потерял бы записи журнала");
+            }
+            System.out.println("Снимок " + file.getName() + " не прочитан (" + e.getMessage()
+                    + "), загружается предыдущий");
+            List<Task> loaded = readSnapshot(previous);
+            restorePreviousSnapshot(file, previous);
+            loadReport.setRecoveredFromPrevious();
+            rolledBack = file.equals(saveFile);
+            return loaded;
+        }
+    }
+
+    private List<Task> readSnapshot(File file) {
+        return BinarySnapshot.isBinary(file)
+                ? ParallelSnapshotReader.readBinary(file, loadReport, textCache)
+                : ParallelSnapshotReader.readCsv(file, loadReport);
+    }
+
+    // Повреждённый снимок остаётся рядом для разбора, иначе следующее сохранение сделало бы его предыдущим
+    private void restorePreviousSnapshot(File file, File previous) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.copy(file.toPath(), Path.of(file.getPath() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(previous.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка восстановления предыдущего снимка");
+        }
+    }
+
+    // Доска, записанная в другой раскладке, переписывается в текущую, а старые файлы удаляются
+    private void migrateLayout(boolean monolithic) {
+        List<File> segmentFiles = new SegmentStore(segmentDirectory(saveFile), 1).files();
+        if (segments == null) {
+            if (!segmentFiles.isEmpty()) {
+                save();
+                segmentFiles.forEach(SegmentStore::delete);
+            }
+            return;
+        }
+        List<File> foreign = segmentFiles.stream().filter(file -> !segments.isCurrent(file)).toList();
+        if (!monolithic && foreign.isEmpty()) {
+            return;
+        }
+        segments.markAll();
+        save();
+        foreign.forEach(SegmentStore::delete);
+        if (monolithic) {
+            writeSnapshotAtomically(saveFile, List.of());
+        }
+    }
+
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+
+    public static File journalFile(File saveFile) {
+        return new File(saveFile.getPath() + ".log");
+    }
+
+    // Предыдущее поколение снимка, на которое загрузчик откатывается при повреждении текущего
+    public static File previousSnapshotFile(File saveFile) {
+        return new File(saveFile.getPath() + ".prev");
+    }
+
+    // Каталог сегментов, если снимок разбит на файлы по типам и диапазонам id
+    public static File segmentDirectory(File saveFile) {
+        return new File(saveFile.getPath() + ".segments");
+    }
+
+    // Журнал, отложенный на время сжатия; остаётся на диске, если запись снимка не завершилась
+    public static File rotatedJournalFile(File saveFile) {
+        return new File(saveFile.getPath() + ".log.1");
+    }
+
+    // Журнал, свёрнутый последним сжатием: вместе с <saveFile>.prev он даёт состояние текущего снимка
+    public static File retainedJournalFile(File saveFile) {
+        return new File(saveFile.getPath() + ".log.prev");
+    }
+
+    // Граница выданных id: после перезапуска новые id начинаются с неё, даже если задачи с последними id удалены
+    public static File idMarkFile(File saveFile) {
+        return new File(saveFile.getPath() + ".ids");
+    }
+
+    // Граница пишется раз на блок id и атомарно заменяет прежнюю. Пока файла доски нет, сохранять нечего
+    private static void writeIdMark(File saveFile, int mark, boolean fsync) {
+        if (!saveFile.exists()) {
+            return;
+        }
+        File file = idMarkFile(saveFile);
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(Integer.toString(mark).getBytes(StandardCharsets.US_ASCII));
+                if (fsync) {
+                    out.getFD().sync();
                 }
-                Task task = backedTaskManager.taskFromString(line);
-                backedTaskManager.addTaskFromFile(task);
             }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
-            throw new ManagerLoadException("Ошибка чтения");
+            throw new ManagerSaveException("Ошибка записи границы id");
         }
-        return backedTaskManager;
     }
 
-    private void addTaskFromFile(Task task) {
-        int id = task.getId();
-        if (super.taskIdCounter < id) {
-            taskIdCounter = id;
+    // Без файла границы (доска из прежней версии) счёт продолжается после наибольшего загруженного id
+    private static int readIdMark(File saveFile) {
+        File file = idMarkFile(saveFile);
+        if (!file.exists()) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(Files.readString(file.toPath(), StandardCharsets.US_ASCII).trim());
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Граница id не прочитана, счёт продолжится по загруженным задачам");
+            return 1;
+        }
+    }
+
+    private void replayJournal() {
+        long started = System.nanoTime();
+        File rotatedFile = rotatedJournalFile(saveFile);
+        File logFile = journalFile(saveFile);
+        File retainedFile = retainedJournalFile(saveFile);
+        if (rolledBack) {
+            replayRecords(TaskJournal.readBytes(retainedFile), null);
+        }
+        int rotatedRecords = replayRecords(TaskJournal.readBytes(rotatedFile), null);
+        int records = replayRecords(TaskJournal.readBytes(logFile), journal);
+        if (journal != null) {
+            journal.setRecords(records);
+            journal.setRotated(rotatedFile.length(), rotatedRecords);
+            // Восстановленное состояние сразу пишется снимком: прочитанный заново откат не видел бы отложенный журнал
+            if (rolledBack) {
+                writeSnapshots(captureSnapshot(false));
+            }
+            if (rotatedFile.exists()) {
+                finishRotation(rotatedFile, retainedFile);
+            }
+        } else if (records > 0 || rotatedFile.exists() || retainedFile.exists()) {
+            // Без журнала снимок должен поглотить записи, иначе они повторно применятся поверх новых данных
+            save();
+            new TaskJournal(rotatedFile).delete();
+            new TaskJournal(logFile).delete();
+            new TaskJournal(retainedFile).delete();
+        }
+        loadReport.setJournal(System.nanoTime() - started);
+    }
+
+    // Сжатие прервалось после ротации: снимок дописывается сейчас. Если и это не удалось, доска всё равно
+    // открывается, а отложенные записи учитываются порогом, так что фоновое сжатие повторит попытку
+    private void finishRotation(File rotatedFile, File retainedFile) {
+        try {
+            if (!rolledBack) {
+                writeSnapshots(captureSnapshot(false));
+            }
+            new TaskJournal(rotatedFile).rotate(retainedFile);
+            journal.clearRotated();
+        } catch (ManagerSaveException e) {
+            System.out.println("Прерванное сжатие журнала не завершено (" + e.getMessage()
+                    + "), записи остаются в " + rotatedFile.getName());
+        }
+    }
+
+    // Оборванный хвост журнала, в который будут дописываться записи (tail), отрезается по последней целой записи
+    private int replayRecords(byte[] bytes, TaskJournal tail) {
+        CsvRecordParser parser = new CsvRecordParser(bytes, 0, bytes.length);
+        int records = 0;
+        while (parser.hasNext()) {
+            int recordStart = parser.position();
+            records++;
+            try {
+                applyRecord(parser);
+            } catch (RuntimeException e) {
+                // Оборванная последняя запись означает сбой во время дозаписи, её пропускаем
+                parser.skipRecord();
+                if (parser.hasNext()) {
+                    throw new ManagerLoadException("Повреждён журнал в записи " + records
+                            + " (байт " + recordStart + ")");
+                }
+                records--;
+                if (tail != null) {
+                    System.out.println("Оборванная запись в конце журнала отрезана (байт " + recordStart + ")");
+                    tail.truncate(recordStart);
+                }
+            }
         }
+        return records;
+    }
+
+    private void applyRecord(CsvRecordParser parser) {
+        if (parser.consume(PUT_PREFIX)) {
+            Task task = parser.readTask();
+            // Снимок после сжатия может быть новее записи: эпик подзадачи уже удалён дальше по журналу
+            if (task.getType() != TaskType.SUBTASK || epics.containsKey(((Subtask) task).getParentId())) {
+                addTaskFromFile(task);
+                if (segments != null) {
+                    segments.put(task.getType(), task.getId());
+                }
+            }
+        } else if (parser.consume(DELETE_PREFIX)) {
+            int id = parser.readInt();
+            parser.endRecord();
+            removeTaskFromFile(id);
+        } else if (parser.consume(CLEAR_PREFIX)) {
+            TaskType type = parser.readType();
+            parser.endRecord();
+            clearTasksFromFile(type);
+        } else {
+            throw new ManagerLoadException("Неизвестная запись журнала в позиции " + parser.position());
+        }
+    }
+
+    private void addTaskFromFile(Task task) {
+        idAllocator.advanceTo(task.getId() + 1);
         if (task.getType().equals(TaskType.EPIC)) {
-            epics.put(task.getId(), (Epic) task);
+            Epic epic = (Epic) task;
+            Epic previous = epics.put(epic.getId(), epic);
+            if (previous != null) {
+                previous.getSubtaskIdSet().forEachInt(epic::addSubtaskId);
+            }
         } else if (task.getType().equals(TaskType.SUBTASK)) {
             Subtask subtask = (Subtask) task;
             int epicId = subtask.getParentId();
             Epic epic = epics.get(epicId);
             if (epic != null) {
-                subtasks.put(subtask.getId(), subtask);
-                System.out.println(epic.getSubtaskIds());
-                epic.addSubtaskId(subtask.getId());
+                Subtask previous = subtasks.put(subtask.getId(), subtask);
+                reindexTime(previous, subtask);
+                forgetAggregate(epicId);
+                if (previous == null) {
+                    epic.addSubtaskId(subtask.getId());
+                }
             } else {
                 throw new ManagerLoadException("Ошибка при восстановлении подзадачи");
             }
         } else {
-            tasks.put(task.getId(), task);
+            reindexTime(tasks.put(task.getId(), task), task);
+        }
+    }
+
+    private void removeTaskFromFile(int id) {
+        if (tasks.containsKey(id)) {
+            unindexTime(tasks.remove(id));
+        } else if (epics.containsKey(id)) {
+            Epic epic = epics.remove(id);
+            forgetAggregate(id);
+            for (int subtaskId : epic.getSubtaskIdSet().toIntArray()) {
+                unindexTime(subtasks.remove(subtaskId));
+                forgetSegment(subtaskId);
+            }
+        } else if (subtasks.containsKey(id)) {
+            Subtask subtask = subtasks.remove(id);
+            unindexTime(subtask);
+            Epic epic = epics.get(subtask.getParentId());
+            if (epic != null) {
+                epic.removeSubtaskId(id);
+                forgetAggregate(epic.getId());
+            }
+        }
+        forgetSegment(id);
+    }
+
+    private void clearTasksFromFile(TaskType type) {
+        clearSegments(type);
+        if (type == TaskType.TASK) {
+            tasks.values().forEach(this::unindexTime);
+            tasks.clear();
+            return;
+        }
+        subtasks.values().forEach(this::unindexTime);
+        subtasks.clear();
+        if (type == TaskType.EPIC) {
+            epics.keySet().forEach(this::forgetAggregate);
+            epics.clear();
+        } else {
+            for (Epic epic : epics.values()) {
+                epic.clearSubtaskIds();
+                forgetAggregate(epic.getId());
+                epic.updateEpic(this);
+            }
         }
     }
 
     private String taskToString(Task task) {
         StringBuilder sb = new StringBuilder();
         long duration = task.getDuration() != null ? task.getDuration().toMinutes() : 0;
-        sb.append(task.getId()).append(',').append(task.getType()).append(',').append(task.getName());
-        sb.append(',').append(task.getStatus()).append(',').append(task.getDescription()).append(',');
+        sb.append(task.getId()).append(',').append(task.getType()).append(',');
+        CsvRecordParser.appendField(sb, task.getName());
+        sb.append(',').append(task.getStatus()).append(',');
+        CsvRecordParser.appendField(sb, task.getDescription());
+        sb.append(',');
         sb.append(task.getStartTime()).append(',').append(duration).append(',').append(task.getEndTime()).append(',');
         if (task.getType() == TaskType.SUBTASK) {
             Subtask subtask = (Subtask) task;
@@ -77,137 +423,457 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     private void save() {
-        if (!Files.exists(saveFile.toPath())) {
-            throw new ManagerSaveException("Файл записи не существует");
+        checkSaveFileExists();
+        writeSnapshots(captureSnapshot(false));
+    }
+
+    // Под блокировкой снимает содержимое файлов, которые нужно переписать: весь снимок или грязные сегменты.
+    // Если запись пойдёт уже без блокировки (detach), задачи копируются: писатели меняют их поля на месте
+    private Map<File, List<Task>> captureSnapshot(boolean detach) {
+        if (segments == null) {
+            return Map.of(saveFile, snapshotView(detach));
+        }
+        Map<File, List<Task>> view = new LinkedHashMap<>();
+        for (SegmentStore.Segment segment : segments.takeDirty()) {
+            view.put(segments.fileOf(segment), segmentView(segment, detach));
         }
+        return view;
+    }
 
-        try (Writer fileWriter = new FileWriter(saveFile, StandardCharsets.UTF_8)) {
-            fileWriter.write("id,type,name,status,description,epic, startTime, duration, endTime, epicId\n");
-            for (Task task : getAllTasks()) {
-                fileWriter.write(taskToString(task) + "\n");
+    private List<Task> segmentView(SegmentStore.Segment segment, boolean detach) {
+        IntObjectMap<? extends Task> source = switch (segment.type()) {
+            case TASK -> tasks;
+            case EPIC -> epics;
+            case SUBTASK -> subtasks;
+        };
+        List<Task> view = new ArrayList<>();
+        for (int id = segments.firstId(segment); id <= segments.lastId(segment); id++) {
+            Task task = source.get(id);
+            if (task != null) {
+                view.add(detach ? task.copy() : task);
+            }
+        }
+        return view;
+    }
+
+    // Пустой сегмент удаляется; при ошибке все сегменты снова помечаются, чтобы следующая запись их повторила
+    private void writeSnapshots(Map<File, List<Task>> view) {
+        try {
+            if (segments != null && !view.isEmpty()) {
+                segments.createDirectory();
+            }
+            for (Map.Entry<File, List<Task>> entry : view.entrySet()) {
+                if (segments != null && entry.getValue().isEmpty()) {
+                    SegmentStore.delete(entry.getKey());
+                } else {
+                    writeSnapshotAtomically(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (RuntimeException e) {
+            if (segments != null) {
+                synchronized (lock) {
+                    segments.markAll();
+                }
             }
-            for (Epic epic : getAllEpics()) {
-                fileWriter.write(taskToString(epic) + "\n");
+            throw e;
+        }
+    }
+
+    private void writeSnapshot(File file, List<Task> view) {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(out);
+            if (options.getSnapshotFormat() == SnapshotFormat.BINARY) {
+                BinarySnapshot.write(buffered, view);
+            } else {
+                SnapshotChecksum.Output checksummed = new SnapshotChecksum.Output(buffered);
+                Writer fileWriter = new OutputStreamWriter(checksummed, StandardCharsets.UTF_8);
+                fileWriter.write("id,type,name,status,description,epic, startTime, duration, endTime, epicId, "
+                        + SnapshotChecksum.CSV_MARKER + "\n");
+                for (Task task : view) {
+                    fileWriter.write(taskToString(task) + "\n");
+                }
+                fileWriter.flush();
+                buffered.write(("\n" + SnapshotChecksum.csvTrailer(checksummed.finish()))
+                        .getBytes(StandardCharsets.US_ASCII));
             }
-            for (Subtask subtask : getAllSubtasks()) {
-                fileWriter.write(taskToString(subtask) + "\n");
+            buffered.flush();
+            if (options.isFsync()) {
+                out.getFD().sync();
             }
         } catch (IOException e) {
             throw new ManagerSaveException("Ошибка сохранения");
         }
     }
 
-    private Task taskFromString(String str) {
-        Task task = null;
-        String[] taskFields = str.split(",");
-        Status status = switch (taskFields[3]) {
-            case "Новое" -> Status.NEW;
-            case "Выполняется" -> Status.IN_PROGRESS;
-            case "Выполнено" -> Status.DONE;
-            default -> throw new IllegalStateException("Неожиданное значение статуса " + taskFields[3]);
-        };
-        LocalDateTime startTime = parseNullableDateTime(taskFields[5]);
-        LocalDateTime endTime = parseNullableDateTime(taskFields[7]);
-        long duration = taskFields[6].equals("null") ? 0 : Long.parseLong(taskFields[6]);
+    /*
+     * Снимок пишется во временный файл и атомарно переименовывается поверх текущего,
+     * поэтому сбой посреди записи оставляет целым прежний снимок. Прежний снимок сохраняется
+     * жёсткой ссылкой <saveFile>.prev, на него загрузчик откатывается при повреждении текущего.
+     */
+    private void writeSnapshotAtomically(File file, List<Task> view) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        writeSnapshot(tempFile, view);
+        try {
+            if (file.exists() && file.length() > 0) {
+                Path previous = previousSnapshotFile(file).toPath();
+                Files.deleteIfExists(previous);
+                try {
+                    Files.createLink(previous, file.toPath());
+                } catch (UnsupportedOperationException | IOException e) {
+                    Files.copy(file.toPath(), previous);
+                }
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            if (options.isFsync()) {
+                syncDirectory(file);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка замены снимка");
+        }
+    }
+
+    // Переименование переживает сбой питания только после fsync каталога; не все ОС это позволяют
+    private void syncDirectory(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // каталог нельзя открыть для fsync, например в Windows
+        }
+    }
+
+    // Задачи, эпики и подзадачи в порядке, в котором их ожидает загрузчик
+    private List<Task> snapshotView(boolean detach) {
+        List<Task> view = new ArrayList<>(tasks.size() + epics.size() + subtasks.size());
+        view.addAll(tasks.values());
+        view.addAll(epics.values());
+        view.addAll(subtasks.values());
+        if (detach) {
+            view.replaceAll(Task::copy);
+        }
+        return view;
+    }
+
+    public void startCompaction(CompactionPolicy policy) {
+        if (journal == null) {
+            throw new IllegalStateException("Сжатие доступно только в режиме журнала");
+        }
+        SnapshotCompactor previous;
+        synchronized (compactionLock) {
+            previous = compactor;
+            compactor = new SnapshotCompactor(this, journal, policy);
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    // Сворачивает журнал в новый снимок. Писатели ждут только копирования ссылок и ротации файла:
+    // записи после точки среза попадают в новый журнал и при загрузке идемпотентно накатываются поверх снимка
+    public void compact() {
+        if (journal == null) {
+            throw new IllegalStateException("Сжатие доступно только в режиме журнала");
+        }
+        synchronized (compactionLock) {
+            File rotatedFile = rotatedJournalFile(saveFile);
+            Map<File, List<Task>> view;
+            synchronized (lock) {
+                if (journal.records() == 0 && !rotatedFile.exists()) {
+                    return;
+                }
+                view = captureSnapshot(true);
+                // Недописанный прошлый срез не перезаписываем: новый снимок покроет оба журнала
+                if (!rotatedFile.exists()) {
+                    journal.rotate(rotatedFile);
+                }
+            }
+            writeSnapshots(view);
+            // Свёрнутый журнал не удаляется, пока не записано следующее поколение: без него откат на .prev
+            // потерял бы его записи
+            new TaskJournal(rotatedFile).rotate(retainedJournalFile(saveFile));
+            journal.clearRotated();
+        }
+    }
+
+    // Сохраняет изменения: без журнала переписывает снимок целиком, с журналом дописывает только записи.
+    // Внутри inBatch запись откладывается до конца пакета, при отложенной записи — до фонового потока
+    private void persist(String... records) {
+        for (String record : records) {
+            record(record);
+        }
+        if (!isInBatch()) {
+            writePending();
+        }
+    }
+
+    private void record(String record) {
+        dirty = true;
+        mutationSequence++;
+        if (journal != null) {
+            pendingRecords.add(record);
+        }
+    }
+
+    private void writePending() {
+        if (!dirty) {
+            return;
+        }
+        if (persister != null) {
+            persister.start(this);
+            persister.mutated();
+            return;
+        }
+        if (journal == null) {
+            save();
+        } else {
+            checkSaveFileExists();
+            journal.append(pendingRecords, options.isFsync());
+            pendingRecords.clear();
+        }
+        dirty = false;
+        persistedSequence = mutationSequence;
+    }
+
+    // Вызывается потоком отложенной записи: под блокировкой забирает изменения, пишет их уже без неё
+    long writePendingBehind() {
+        List<String> records = null;
+        Map<File, List<Task>> view = null;
+        long sequence;
+        synchronized (lock) {
+            if (!dirty) {
+                return persistedSequence;
+            }
+            sequence = mutationSequence;
+            if (journal == null) {
+                view = captureSnapshot(true);
+            } else {
+                records = new ArrayList<>(pendingRecords);
+                pendingRecords.clear();
+            }
+            dirty = false;
+        }
+        try {
+            checkSaveFileExists();
+            if (journal == null) {
+                writeSnapshots(view);
+            } else {
+                journal.append(records, options.isFsync());
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                if (records != null) {
+                    pendingRecords.addAll(0, records);
+                }
+                dirty = true;
+            }
+            throw e;
+        }
+        persistedSequence = sequence;
+        return sequence;
+    }
+
+    // Future завершается, когда все сделанные до вызова изменения записаны с выбранной надёжностью
+    public CompletableFuture<Void> flush() {
+        long sequence;
+        synchronized (lock) {
+            sequence = mutationSequence;
+            if (sequence <= persistedSequence) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (persister == null) {
+                writePending();
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+        persister.start(this);
+        return persister.flush(sequence);
+    }
 
-        TaskType tasktype = TaskType.valueOf(taskFields[1]);
-        if (tasktype == TaskType.TASK) {
-            task = new Task(Integer.parseInt(taskFields[0]), taskFields[2], taskFields[4], status, startTime,
-                    Duration.ofMinutes(duration));
-        } else if (tasktype == TaskType.SUBTASK) {
-            task = new Subtask(Integer.parseInt(taskFields[0]), taskFields[4], taskFields[2], status,
-                    startTime, Duration.ofMinutes(duration), Integer.parseInt(taskFields[8]));
-        } else if (tasktype == TaskType.EPIC) {
-            task = new Epic(Integer.parseInt(taskFields[0]), taskFields[2], taskFields[4], status,
-                    startTime, Duration.ofMinutes(duration), endTime);
+    private void checkSaveFileExists() {
+        if (!Files.exists(saveFile.toPath())) {
+            throw new ManagerSaveException("Файл записи не существует");
+        }
+    }
+
+    @Override
+    protected void recalculateEpic(Epic epic) {
+        super.recalculateEpic(epic);
+        record(putRecord(epic));
+    }
+
+    @Override
+    public void inBatch(Consumer<TaskManager> batch) {
+        synchronized (lock) {
+            super.inBatch(batch);
+        }
+    }
+
+    @Override
+    protected void completeBatch() {
+        super.completeBatch();
+        writePending();
+    }
+
+    // Вместе с записью журнала помечается грязным сегмент, который она затрагивает
+    private String putRecord(Task task) {
+        if (segments != null) {
+            segments.put(task.getType(), task.getId());
+        }
+        return PUT + ',' + taskToString(task);
+    }
+
+    private String deleteRecord(int id) {
+        forgetSegment(id);
+        return DELETE + ',' + id;
+    }
+
+    private String clearRecord(TaskType type) {
+        clearSegments(type);
+        return CLEAR + ',' + type;
+    }
+
+    // Id одни на все типы, поэтому задача, которой больше нет ни в одной таблице, удалена из своего сегмента
+    private void forgetSegment(int id) {
+        if (segments != null && !tasks.containsKey(id) && !epics.containsKey(id) && !subtasks.containsKey(id)) {
+            segments.remove(id);
         }
-        return task;
     }
 
-    public static LocalDateTime parseNullableDateTime(String dateTime) {
-        return Optional.ofNullable(dateTime)
-                .filter(s -> !"null".equals(s))
-                .map(LocalDateTime::parse)
-                .orElse(null);
+    private void clearSegments(TaskType type) {
+        if (segments == null) {
+            return;
+        }
+        segments.clear(type);
+        if (type == TaskType.EPIC) {
+            segments.clear(TaskType.SUBTASK);
+        }
     }
 
     @Override
     public int addNewTask(Task task) {
-        int id = super.addNewTask(task);
-        save();
-        return id;
+        synchronized (lock) {
+            int id = super.addNewTask(task);
+            persist(putRecord(task));
+            return id;
+        }
     }
 
     @Override
     public int addNewEpic(Epic epic) {
-        int id = super.addNewEpic(epic);
-        save();
-        return id;
+        synchronized (lock) {
+            int id = super.addNewEpic(epic);
+            persist(putRecord(epic));
+            return id;
+        }
     }
 
     @Override
     public int addNewSubtask(Subtask subtask) {
-        int id = super.addNewSubtask(subtask);
-        super.updateEpic(getEpic(subtask.getParentId()));
-        save();
-        return id;
+        synchronized (lock) {
+            int id = super.addNewSubtask(subtask);
+            persist(putRecord(subtask));
+            return id;
+        }
     }
 
     @Override
     public Task updateTask(Task task) {
-        Task updatedTask = super.updateTask(task);
-        save();
-        return updatedTask;
+        synchronized (lock) {
+            Task updatedTask = super.updateTask(task);
+            persist(putRecord(updatedTask));
+            return updatedTask;
+        }
     }
 
     @Override
     public Epic updateEpic(Epic epic) {
-        Epic updatedEpic = super.updateEpic(epic);
-        save();
-        return updatedEpic;
+        synchronized (lock) {
+            Epic updatedEpic = super.updateEpic(epic);
+            persist(putRecord(updatedEpic));
+            return updatedEpic;
+        }
     }
 
     @Override
     public Subtask updateSubtask(Subtask subtask) {
-        Subtask updatedSubtask = super.updateSubtask(subtask);
-        save();
-        return updatedSubtask;
+        synchronized (lock) {
+            Subtask updatedSubtask = super.updateSubtask(subtask);
+            persist(putRecord(updatedSubtask));
+            return updatedSubtask;
+        }
     }
 
     @Override
     public Task deleteTask(int id) {
-        super.deleteTask(id);
-        save();
-        return null;
+        synchronized (lock) {
+            super.deleteTask(id);
+            persist(deleteRecord(id));
+            return null;
+        }
     }
 
     @Override
     public void deleteEpic(int id) {
-        super.deleteEpic(id);
-        save();
+        synchronized (lock) {
+            List<Integer> subtaskIds = epics.containsKey(id)
+                    ? epics.get(id).getSubtaskIds()
+                    : List.of();
+            super.deleteEpic(id);
+            subtaskIds.forEach(this::forgetSegment);
+            persist(deleteRecord(id));
+        }
     }
 
     @Override
     public void deleteSubtask(int id) {
-        super.deleteSubtask(id);
-        save();
+        synchronized (lock) {
+            super.deleteSubtask(id);
+            persist(deleteRecord(id));
+        }
     }
 
     @Override
     public void deleteTasks() {
-        super.deleteTasks();
-        save();
+        synchronized (lock) {
+            super.deleteTasks();
+            persist(clearRecord(TaskType.TASK));
+        }
     }
 
     @Override
     public void deleteSubtasks() {
-        super.deleteSubtasks();
-        save();
+        synchronized (lock) {
+            super.deleteSubtasks();
+            persist(clearRecord(TaskType.SUBTASK));
+        }
     }
 
     @Override
     public void deleteEpics() {
-        super.deleteEpics();
-        save();
+        synchronized (lock) {
+            super.deleteEpics();
+            persist(clearRecord(TaskType.EPIC));
+        }
+    }
+
+    @Override
+    public void close() {
+        SnapshotCompactor running;
+        synchronized (compactionLock) {
+            running = compactor;
+            compactor = null;
+        }
+        if (running != null) {
+            running.close();
+        }
+        if (persister != null) {
+            persister.close();
+        }
+        if (journal != null) {
+            synchronized (lock) {
+                journal.close();
+            }
+        }
     }
 }
@@ -0,0 +1,42 @@
+package manager;
+
+import task.Task;
+
+import java.util.List;
+import java.util.function.IntFunction;
+
+// История, которая вдобавок к порядку просмотров считает частоту обращений к каждому id
+public class FrequencyHistoryManager implements HistoryManager {
+    private final HistoryManager delegate;
+    private final FrequencySketch sketch;
+
+    public FrequencyHistoryManager(HistoryManager delegate, FrequencySketch sketch) {
+        this.delegate = delegate;
+        this.sketch = sketch;
+    }
+
+    @Override
+    public void add(Task task) {
+        sketch.record(task.getId());
+        delegate.add(task);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return delegate.getHistory();
+    }
+
+    @Override
+    public void remove(int id) {
+        delegate.remove(id);
+    }
+
+    @Override
+    public void bind(IntFunction<Task> lookup) {
+        delegate.bind(lookup);
+    }
+
+    public FrequencySketch getSketch() {
+        return sketch;
+    }
+}
@@ -0,0 +1,146 @@
+package manager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Приблизительная частота обращений к id: count-min sketch из DEPTH строк счётчиков с консервативным
+ * обновлением. Оценка не бывает меньше настоящего числа обращений с момента последнего затухания.
+ * После sampleSize записей все счётчики делятся пополам, так что старая популярность постепенно
+ * забывается. Рядом ведётся список из k самых частых id, обновляемый при записи за O(k).
+ * Запись идёт по пути каждого GET, поэтому обходится без общей блокировки: счётчики атомарные
+ * и растут через CAS, затухание выполняет один поток, а список самых частых обновляется под
+ * tryLock — занятый список пропускается, следующая запись того же id его догонит. При гонке двух
+ * записей одного id одна из них может не учесться; для оценки популярности это допустимо.
+ */
+public class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x97CB3127, 0x0B0D7A35, 0x6C8E9CF5, 0x4D2A3E11};
+    private static final int SAMPLE_FACTOR = 10;
+
+    private final AtomicIntegerArray counters;
+    private final int width;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+    private final ReentrantLock decayLock = new ReentrantLock();
+
+    // Список самых частых id меняется только под topLock
+    private final ReentrantLock topLock = new ReentrantLock();
+    private final int[] topIds;
+    private final int[] topCounts;
+    private int topSize;
+
+    public FrequencySketch(int expectedIds, int topK) {
+        if (expectedIds <= 0 || topK <= 0) {
+            throw new IllegalArgumentException("Размеры счётчика частоты должны быть положительными");
+        }
+        int size = Integer.highestOneBit(Math.max(16, expectedIds) - 1) << 1;
+        this.width = size;
+        this.counters = new AtomicIntegerArray(DEPTH * size);
+        this.sampleSize = SAMPLE_FACTOR * size;
+        this.topIds = new int[topK];
+        this.topCounts = new int[topK];
+    }
+
+    public void record(int id) {
+        int estimate = estimate(id);
+        for (int row = 0; row < DEPTH; row++) {
+            // Консервативное обновление: растут только счётчики, равные оценке
+            counters.compareAndSet(indexOf(id, row), estimate, estimate + 1);
+        }
+        if (topLock.tryLock()) {
+            try {
+                updateTop(id, estimate + 1);
+            } finally {
+                topLock.unlock();
+            }
+        }
+        if (additions.incrementAndGet() >= sampleSize && decayLock.tryLock()) {
+            try {
+                if (additions.get() >= sampleSize) {
+                    decay();
+                }
+            } finally {
+                decayLock.unlock();
+            }
+        }
+    }
+
+    public int frequency(int id) {
+        return estimate(id);
+    }
+
+    // Самые частые id по убыванию оценки
+    public List<Integer> hottest() {
+        topLock.lock();
+        try {
+            List<Integer> order = new ArrayList<>(topSize);
+            for (int i = 0; i < topSize; i++) {
+                order.add(i);
+            }
+            order.sort((left, right) -> Integer.compare(topCounts[right], topCounts[left]));
+            List<Integer> ids = new ArrayList<>(topSize);
+            for (int position : order) {
+                ids.add(topIds[position]);
+            }
+            return ids;
+        } finally {
+            topLock.unlock();
+        }
+    }
+
+    private int estimate(int id) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters.get(indexOf(id, row)));
+        }
+        return min;
+    }
+
+    private int indexOf(int id, int row) {
+        int hash = (id + SEEDS[row]) * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return row * width + (hash & (width - 1));
+    }
+
+    private void updateTop(int id, int count) {
+        int coldest = 0;
+        for (int i = 0; i < topSize; i++) {
+            if (topIds[i] == id) {
+                topCounts[i] = count;
+                return;
+            }
+            if (topCounts[i] < topCounts[coldest]) {
+                coldest = i;
+            }
+        }
+        if (topSize < topIds.length) {
+            topIds[topSize] = id;
+            topCounts[topSize++] = count;
+        } else if (count > topCounts[coldest]) {
+            topIds[coldest] = id;
+            topCounts[coldest] = count;
+        }
+    }
+
+    // Вызывается одним потоком под decayLock; параллельные записи продолжают идти в счётчики
+    private void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, count -> count >>> 1);
+        }
+        topLock.lock();
+        try {
+            for (int i = 0; i < topSize; i++) {
+                topCounts[i] >>>= 1;
+            }
+        } finally {
+            topLock.unlock();
+        }
+        additions.updateAndGet(count -> count / 2);
+    }
+}
@@ -0,0 +1,148 @@
+package manager;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Свободные промежутки между запланированными задачами в секундах эпохи: декартово дерево по началу
+ * промежутка, где каждый узел помнит наибольшую длину промежутка в своём поддереве.
+ * Первый промежуток длиной не меньше заданной ищется спуском по дереву за O(log n).
+ * До первой задачи и после последней лежат бесконечные промежутки.
+ */
+class GapIndex {
+    static final long MIN = Long.MIN_VALUE;
+    static final long MAX = Long.MAX_VALUE;
+
+    private static class Node {
+        final long start;
+        final long end;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        long maxLength;
+        Node left;
+        Node right;
+
+        Node(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.maxLength = length();
+        }
+
+        long length() {
+            return start == MIN || end == MAX ? MAX : end - start;
+        }
+    }
+
+    private Node root;
+
+    GapIndex() {
+        clear();
+    }
+
+    void clear() {
+        root = new Node(MIN, MAX);
+    }
+
+    // Промежуток нулевой длины не хранится: задачи, идущие встык, его не оставляют
+    void put(long start, long end) {
+        if (start >= end) {
+            return;
+        }
+        Node[] parts = split(root, start);
+        root = merge(merge(parts[0], new Node(start, end)), parts[1]);
+    }
+
+    void remove(long start) {
+        Node[] parts = split(root, start);
+        Node[] rest = split(parts[1], start + 1);
+        root = merge(parts[0], rest[1]);
+    }
+
+    /*
+     * Начало самого раннего окна длиной length, начинающегося не раньше from: либо from внутри
+     * промежутка, где окно помещается, либо начало первого подходящего промежутка правее from.
+     */
+    long findFirst(long from, long length) {
+        Node containing = floor(root, from);
+        // Бесконечный промежуток вмещает любое окно; вычитание из MAX при отрицательном from переполнилось бы
+        if (containing != null && (containing.end == MAX || containing.end - from >= length)) {
+            return from;
+        }
+        Node next = firstFit(root, from, length);
+        return next == null ? MAX : next.start;
+    }
+
+    private static Node floor(Node node, long key) {
+        Node result = null;
+        while (node != null) {
+            if (node.start <= key) {
+                result = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return result;
+    }
+
+    // Самый левый промежуток с началом правее from и длиной не меньше length; поддеревья без такого отсекаются по maxLength
+    private static Node firstFit(Node node, long from, long length) {
+        if (node == null || node.maxLength < length) {
+            return null;
+        }
+        if (node.start <= from) {
+            return firstFit(node.right, from, length);
+        }
+        Node left = firstFit(node.left, from, length);
+        if (left != null) {
+            return left;
+        }
+        if (node.length() >= length) {
+            return node;
+        }
+        return firstFit(node.right, from, length);
+    }
+
+    // Делит дерево на узлы с началом меньше key и остальные
+    private static Node[] split(Node node, long key) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (node.start < key) {
+            Node[] parts = split(node.right, key);
+            node.right = parts[0];
+            update(node);
+            return new Node[]{node, parts[1]};
+        }
+        Node[] parts = split(node.left, key);
+        node.left = parts[1];
+        update(node);
+        return new Node[]{parts[0], node};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        long max = node.length();
+        if (node.left != null) {
+            max = Math.max(max, node.left.maxLength);
+        }
+        if (node.right != null) {
+            max = Math.max(max, node.right.maxLength);
+        }
+        node.maxLength = max;
+    }
+}
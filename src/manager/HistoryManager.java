@@ -3,6 +3,7 @@ package manager;
 import task.Task;
 
 import java.util.List;
+import java.util.function.IntFunction;
 
 public interface HistoryManager {
     void add(Task task);
@@ -10,4 +11,8 @@ public interface HistoryManager {
     List<Task> getHistory();
 
     void remove(int id);
+
+    // Менеджер задач передаёт поиск живой задачи по id; истории, хранящие сами задачи, его не используют
+    default void bind(IntFunction<Task> lookup) {
+    }
 }
@@ -0,0 +1,39 @@
+package manager;
+
+import java.time.Duration;
+
+// Ограничения истории просмотров: сколько задач хранится и сколько живёт запись без повторного просмотра
+public class HistoryPolicy {
+    private static final HistoryPolicy UNBOUNDED = new HistoryPolicy(Integer.MAX_VALUE, null);
+
+    private final int capacity;
+    private final Duration timeToLive;
+
+    // timeToLive == null — записи не устаревают
+    public HistoryPolicy(int capacity, Duration timeToLive) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость истории должна быть положительной");
+        }
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("Время жизни записи должно быть положительным");
+        }
+        this.capacity = capacity;
+        this.timeToLive = timeToLive;
+    }
+
+    public static HistoryPolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    boolean isExpired(long accessedAtMillis, long nowMillis) {
+        return timeToLive != null && nowMillis - accessedAtMillis >= timeToLive.toMillis();
+    }
+}
@@ -0,0 +1,71 @@
+package manager;
+
+import java.util.function.IntConsumer;
+
+/*
+ * Выдача id блоками: поток забирает из общего счётчика сразу blockSize id и раздаёт их без синхронизации.
+ * Граница выданных блоков передаётся onReserve до того, как id нового блока уйдут потребителю, поэтому
+ * после перезапуска счёт продолжается с неё и id не повторяются. Неиспользованный остаток блока
+ * при этом пропускается. В одном потоке id по-прежнему идут подряд.
+ */
+class IdAllocator {
+    static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final int blockSize;
+    private final IntConsumer onReserve;
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+    // Первый id, ещё не попавший ни в один блок
+    private volatile int highWater = 1;
+    // Меняется при сдвиге границы: блоки, взятые потоками раньше, становятся недействительными
+    private volatile int generation;
+
+    IdAllocator(int blockSize) {
+        this(blockSize, mark -> {
+        });
+    }
+
+    IdAllocator(int blockSize, IntConsumer onReserve) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Размер блока id должен быть положительным");
+        }
+        this.blockSize = blockSize;
+        this.onReserve = onReserve;
+    }
+
+    int next() {
+        Block block = blocks.get();
+        if (block.next == block.limit || block.generation != generation) {
+            reserve(block);
+        }
+        return block.next++;
+    }
+
+    // Id ниже nextId больше не выдаются; вызывается при загрузке для каждого восстановленного id
+    synchronized void advanceTo(int nextId) {
+        if (nextId > highWater) {
+            highWater = nextId;
+            generation++;
+        }
+    }
+
+    int highWater() {
+        return highWater;
+    }
+
+    // Граница сохраняется раньше, чем сдвигается: если сохранить не удалось, блок не выдаётся
+    private synchronized void reserve(Block block) {
+        int start = highWater;
+        int limit = start + blockSize;
+        onReserve.accept(limit);
+        highWater = limit;
+        block.next = start;
+        block.limit = limit;
+        block.generation = generation;
+    }
+
+    private static final class Block {
+        private int next;
+        private int limit;
+        private int generation = -1;
+    }
+}
@@ -0,0 +1,217 @@
+package manager;
+
+import task.Task;
+import util.IntHash;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/*
+ * История, которая хранит только id. Двусвязный список лежит в параллельных массивах ids/previous/next,
+ * освободившиеся ячейки уходят в список свободных, а позицию id находит таблица с открытой адресацией
+ * и перемешанным хешем (IntHash). Задачи ищутся по id при чтении через поиск, переданный менеджером
+ * задач: getHistory возвращает текущие версии, а удалённые задачи выпадают из истории и не удерживаются
+ * ею. Ёмкость и время жизни записей ограничиваются той же HistoryPolicy, что и у InMemoryHistoryManager.
+ */
+public class IdHistoryManager implements HistoryManager {
+    private static final int NIL = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private final HistoryPolicy policy;
+    private final Clock clock;
+    private IntFunction<Task> lookup;
+
+    private int[] ids = new int[MIN_CAPACITY];
+    private int[] previous = new int[MIN_CAPACITY];
+    private int[] next = new int[MIN_CAPACITY];
+    private long[] accessedAt = new long[MIN_CAPACITY];
+    // Ячейка списка + 1 для id; 0 — пустая позиция
+    private int[] index = new int[MIN_CAPACITY * 2];
+    private int head = NIL;
+    private int tail = NIL;
+    private int free = NIL;
+    private int used;
+    private int size;
+
+    public IdHistoryManager() {
+        this(HistoryPolicy.unbounded());
+    }
+
+    public IdHistoryManager(HistoryPolicy policy) {
+        this(policy, Clock.systemUTC());
+    }
+
+    public IdHistoryManager(HistoryPolicy policy, Clock clock) {
+        this.policy = policy;
+        this.clock = clock;
+    }
+
+    @Override
+    public void bind(IntFunction<Task> lookup) {
+        this.lookup = lookup;
+    }
+
+    @Override
+    public void add(Task task) {
+        long now = clock.millis();
+        int id = task.getId();
+        int position = find(id);
+        if (position >= 0) {
+            int slot = index[position] - 1;
+            unlink(slot);
+            linkLast(slot);
+            accessedAt[slot] = now;
+        } else {
+            int slot = allocate();
+            ids[slot] = id;
+            accessedAt[slot] = now;
+            linkLast(slot);
+            insert(slot);
+            size++;
+            while (size > policy.getCapacity()) {
+                evict(head);
+            }
+        }
+        evictExpired(now);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        if (lookup == null) {
+            throw new IllegalStateException("История не привязана к менеджеру задач");
+        }
+        evictExpired(clock.millis());
+        List<Task> tasks = new ArrayList<>(size);
+        int slot = head;
+        while (slot != NIL) {
+            int following = next[slot];
+            Task task = lookup.apply(ids[slot]);
+            if (task != null) {
+                tasks.add(task);
+            } else {
+                evict(slot);
+            }
+            slot = following;
+        }
+        return tasks;
+    }
+
+    @Override
+    public void remove(int id) {
+        int position = find(id);
+        if (position >= 0) {
+            evict(index[position] - 1);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void evictExpired(long now) {
+        while (head != NIL && policy.isExpired(accessedAt[head], now)) {
+            evict(head);
+        }
+    }
+
+    private void evict(int slot) {
+        unlink(slot);
+        delete(find(ids[slot]));
+        next[slot] = free;
+        free = slot;
+        size--;
+    }
+
+    private int allocate() {
+        if (free != NIL) {
+            int slot = free;
+            free = next[slot];
+            return slot;
+        }
+        if (used == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            next = Arrays.copyOf(next, capacity);
+            accessedAt = Arrays.copyOf(accessedAt, capacity);
+        }
+        if ((size + 1) * 2 > index.length) {
+            rebuildIndex(index.length * 2);
+        }
+        return used++;
+    }
+
+    private void linkLast(int slot) {
+        previous[slot] = tail;
+        next[slot] = NIL;
+        if (tail == NIL) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        if (previous[slot] != NIL) {
+            next[previous[slot]] = next[slot];
+        } else {
+            head = next[slot];
+        }
+        if (next[slot] != NIL) {
+            previous[next[slot]] = previous[slot];
+        } else {
+            tail = previous[slot];
+        }
+    }
+
+    private int find(int id) {
+        int mask = index.length - 1;
+        int position = IntHash.slot(id, mask);
+        while (index[position] != 0) {
+            if (ids[index[position] - 1] == id) {
+                return position;
+            }
+            position = (position + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int slot) {
+        int mask = index.length - 1;
+        int position = IntHash.slot(ids[slot], mask);
+        while (index[position] != 0) {
+            position = (position + 1) & mask;
+        }
+        index[position] = slot + 1;
+    }
+
+    // Удаление со сдвигом назад: цепочки проб остаются непрерывными без меток удаления
+    private void delete(int position) {
+        int mask = index.length - 1;
+        int hole = position;
+        int probe = position;
+        while (true) {
+            probe = (probe + 1) & mask;
+            if (index[probe] == 0) {
+                break;
+            }
+            int home = IntHash.slot(ids[index[probe] - 1], mask);
+            if (IntHash.canShift(home, hole, probe)) {
+                index[hole] = index[probe];
+                hole = probe;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    private void rebuildIndex(int capacity) {
+        index = new int[capacity];
+        for (int slot = head; slot != NIL; slot = next[slot]) {
+            insert(slot);
+        }
+    }
+}
@@ -1,40 +1,68 @@
 package manager;
 
 import task.Task;
+import util.IntObjectMap;
 
+import java.time.Clock;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+/*
+ * История — двусвязный список от давно просмотренных к недавним. Сверх ёмкости политики вытесняется
+ * голова списка (LRU), устаревшие по времени жизни записи тоже копятся у головы и снимаются при
+ * добавлении и чтении. Поэтому память и стоимость getHistory ограничены ёмкостью, а не временем работы.
+ */
 public class InMemoryHistoryManager implements HistoryManager {
 
     private static class Node {
         Task task;
         Node previous;
         Node next;
+        long accessedAt;
 
-        Node(Task task) {
+        Node(Task task, long accessedAt) {
             this.task = task;
+            this.accessedAt = accessedAt;
         }
     }
 
     private Node head;
     private Node tail;
-    private final Map<Integer, Node> historyMap = new HashMap<>();
+    private final IntObjectMap<Node> historyMap = new IntObjectMap<>();
+    private final HistoryPolicy policy;
+    private final Clock clock;
+
+    public InMemoryHistoryManager() {
+        this(HistoryPolicy.unbounded());
+    }
+
+    public InMemoryHistoryManager(HistoryPolicy policy) {
+        this(policy, Clock.systemUTC());
+    }
+
+    public InMemoryHistoryManager(HistoryPolicy policy, Clock clock) {
+        this.policy = policy;
+        this.clock = clock;
+    }
 
     @Override
     public void add(Task task) {
+        long now = clock.millis();
         Node node = historyMap.get(task.getId());
         if (node != null) {
             removeNode(node);
         }
-        linkLast(task);
+        linkLast(task, now);
         historyMap.put(task.getId(), tail);
+        while (historyMap.size() > policy.getCapacity()) {
+            evictHead();
+        }
+        evictExpired(now);
     }
 
     @Override
     public List<Task> getHistory() {
+        evictExpired(clock.millis());
         return getTasks();
     }
 
@@ -47,8 +75,12 @@ public class InMemoryHistoryManager implements HistoryManager {
         }
     }
 
-    private void linkLast(Task task) {
-        Node newNode = new Node(task);
+    public HistoryPolicy getPolicy() {
+        return policy;
+    }
+
+    private void linkLast(Task task, long accessedAt) {
+        Node newNode = new Node(task, accessedAt);
         if (tail == null) {
             head = newNode;
         } else {
@@ -58,8 +90,20 @@ public class InMemoryHistoryManager implements HistoryManager {
         tail = newNode;
     }
 
+    private void evictExpired(long now) {
+        while (head != null && policy.isExpired(head.accessedAt, now)) {
+            evictHead();
+        }
+    }
+
+    private void evictHead() {
+        Node eldest = head;
+        removeNode(eldest);
+        historyMap.remove(eldest.task.getId());
+    }
+
     private List<Task> getTasks() {
-        List<Task> tasks = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>(historyMap.size());
         Node current = head;
         while (current != null) {
             tasks.add(current.task);
@@ -87,4 +131,3 @@ public class InMemoryHistoryManager implements HistoryManager {
         }
     }
 }
-
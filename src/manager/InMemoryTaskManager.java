@@ -5,27 +5,38 @@ import exception.NotFoundException;
 import task.Epic;
 import task.Subtask;
 import task.Task;
+import util.IntObjectMap;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 public class InMemoryTaskManager implements TaskManager {
-    protected final Map<Integer, Task> tasks = new HashMap<>();
-    protected final Map<Integer, Subtask> subtasks = new HashMap<>();
-    protected final Map<Integer, Epic> epics = new HashMap<>();
+    // Хранилища по int-ключу без упаковки id; наружу отдаются как обычные Map
+    protected final IntObjectMap<Task> tasks = new IntObjectMap<>();
+    protected final IntObjectMap<Subtask> subtasks = new IntObjectMap<>();
+    protected final IntObjectMap<Epic> epics = new IntObjectMap<>();
     private final HistoryManager historyManager;
-    protected int taskIdCounter = 1;
-    protected final Set<Task> timeOrderedTasks = new TreeSet<>(Comparator.comparing(Task::getStartTime,
-            Comparator.nullsLast(LocalDateTime::compareTo)));
+    final IdAllocator idAllocator;
+    private final TimeIndex timeIndex = new TimeIndex();
+    // Сводки подзадач по id эпика; строятся по требованию и переживают замену объекта эпика
+    private final IntObjectMap<EpicAggregate> epicAggregates = new IntObjectMap<>();
+    private int batchDepth;
+    private final Set<Integer> pendingEpics = new LinkedHashSet<>();
 
     public InMemoryTaskManager(HistoryManager historyManager) {
+        this(historyManager, new IdAllocator(IdAllocator.DEFAULT_BLOCK_SIZE));
+    }
+
+    InMemoryTaskManager(HistoryManager historyManager, IdAllocator idAllocator) {
         this.historyManager = historyManager;
+        this.idAllocator = idAllocator;
+        historyManager.bind(this::findTask);
     }
 
     public int generateUid(Task task) {
-        return taskIdCounter++;
+        return idAllocator.next();
     }
 
     @Override
@@ -49,12 +60,14 @@ public class InMemoryTaskManager implements TaskManager {
         if (epic == null) {
             throw new NotFoundException("Эпик с ID " + epicId + " не найден.");
         }
-        return epic.getSubtaskIds()
-                .stream()
-                .filter(Objects::nonNull)
-                .map(subtasks::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        List<Subtask> epicSubtasks = new ArrayList<>(epic.getSubtaskIdSet().size());
+        epic.getSubtaskIdSet().forEachInt(subtaskId -> {
+            Subtask subtask = subtasks.get(subtaskId);
+            if (subtask != null) {
+                epicSubtasks.add(subtask);
+            }
+        });
+        return epicSubtasks;
     }
 
     @Override
@@ -102,13 +115,22 @@ public class InMemoryTaskManager implements TaskManager {
         return epics.get(id);
     }
 
+    // Текущая версия задачи любого типа без записи в историю
+    private Task findTask(int id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            task = subtasks.get(id);
+        }
+        return task != null ? task : epics.get(id);
+    }
+
     @Override
     public int addNewTask(Task task) {
         int taskId = generateUid(task);
         task.setId(taskId);
         if (task.getStartTime() != null) {
             checkForTimeConflicts(task);
-            timeOrderedTasks.add(task);
+            indexTime(task);
         }
         tasks.put(taskId, task);
         return taskId;
@@ -128,20 +150,23 @@ public class InMemoryTaskManager implements TaskManager {
         int subtaskId = subtask.getId();
         if (subtask.getStartTime() != null) {
             checkForTimeConflicts(subtask);
-            timeOrderedTasks.add(subtask);
+            indexTime(subtask);
         }
         Epic epic = epics.get(subtask.getParentId());
         epic.addSubtaskId(subtaskId);
         subtasks.put(subtaskId, subtask);
-        updateEpic(epic);
-        updateEpicTimeFields(epic);
+        aggregateOf(epic).put(subtask);
+        refreshEpic(epic);
         return subtask.getId();
     }
 
     @Override
     public Task updateTask(Task task) {
         if (task != null && tasks.containsKey(task.getId())) {
-            tasks.put(task.getId(), task);
+            if (task.getStartTime() != null) {
+                checkForTimeConflicts(task);
+            }
+            reindexTime(tasks.put(task.getId(), task), task);
         } else {
             throw new NotFoundException("Задача с ID" + task.getId() + "не найдена.");
         }
@@ -161,8 +186,13 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public Subtask updateSubtask(Subtask subtask) {
         if (subtask != null && subtasks.containsKey(subtask.getId())) {
-            subtasks.put(subtask.getId(), subtask);
-            updateEpic(getEpicWithoutHistory(subtask.getParentId()));
+            if (subtask.getStartTime() != null) {
+                checkForTimeConflicts(subtask);
+            }
+            reindexTime(subtasks.put(subtask.getId(), subtask), subtask);
+            Epic epic = getEpicWithoutHistory(subtask.getParentId());
+            aggregateOf(epic).put(subtask);
+            refreshEpic(epic);
         } else {
             throw new NotFoundException("Подзадача с ID" + subtask.getId() + "не найдена.");
         }
@@ -171,7 +201,7 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public Task deleteTask(int id) {
-        timeOrderedTasks.remove(getTask(id));
+        unindexTime(getTask(id));
         tasks.remove(id);
         return null;
     }
@@ -182,12 +212,12 @@ public class InMemoryTaskManager implements TaskManager {
             Epic epic = epics.get(id);
             List<Subtask> epicSubtasks = getEpicSubtasks(id);
             epicSubtasks.forEach(subtask -> {
-                epic.getSubtaskIds().remove(subtask.getId());
-                timeOrderedTasks.removeIf(task -> epicSubtasks.stream()
-                        .anyMatch(sub -> sub.getId() == task.getId()));
+                epic.removeSubtaskId(subtask.getId());
+                unindexTime(subtask);
                 subtasks.remove(subtask.getId());
             });
             epics.remove(id);
+            epicAggregates.remove(id);
         } else {
             throw new NotFoundException("Эпик с ID " + id + " не найден.");
         }
@@ -199,12 +229,12 @@ public class InMemoryTaskManager implements TaskManager {
             try {
                 Subtask subtask = getSubtask(id);
                 Epic epic = epics.get(subtask.getParentId());
-                timeOrderedTasks.remove(subtasks.get(id));
+                unindexTime(subtasks.get(id));
                 historyManager.remove(id);
                 subtasks.remove(id);
                 epic.removeSubtaskId(id);
-                updateEpic(epic);
-                updateEpicTimeFields(epic);
+                aggregateOf(epic).remove(id);
+                refreshEpic(epic);
             } catch (Exception e) {
                 throw new NotFoundException("Эпик для данной подзадачи не найден.");
             }
@@ -215,23 +245,26 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public void deleteTasks() {
-        timeOrderedTasks.removeAll(tasks.values());
+        tasks.values().forEach(this::unindexTime);
         tasks.clear();
     }
 
     @Override
     public void deleteSubtasks() {
+        epicAggregates.clear();
         epics.values().forEach(epic -> {
-            epic.getSubtaskIds().clear();
-            updateEpic(epic);
+            epic.clearSubtaskIds();
+            refreshEpic(epic);
         });
-        timeOrderedTasks.removeAll(subtasks.values());
+        subtasks.values().forEach(this::unindexTime);
         subtasks.clear();
     }
 
     @Override
     public void deleteEpics() {
+        subtasks.values().forEach(this::unindexTime);
         epics.clear();
+        epicAggregates.clear();
         subtasks.clear();
     }
 
@@ -255,47 +288,123 @@ public class InMemoryTaskManager implements TaskManager {
         return historyManager.getHistory();
     }
 
-    private void updateEpicTimeFields(Epic epic) {
-        List<Subtask> subtasks = getEpicSubtasks(epic.getId());
-        LocalDateTime minStartTime = subtasks.stream()
-                .map(Subtask::getStartTime)
-                .filter(Objects::nonNull)
-                .min(LocalDateTime::compareTo)
-                .orElse(null);
-        LocalDateTime maxEndTime = subtasks.stream()
-                .map(Subtask::getEndTime)
-                .filter(Objects::nonNull)
-                .max(LocalDateTime::compareTo)
-                .orElse(null);
-        Duration duration = subtasks.stream()
-                .map(Subtask::getDuration)
-                .filter(Objects::nonNull)
-                .reduce(Duration::plus)
-                .orElse(Duration.ZERO);
-        epic.setStartTime(minStartTime);
-        epic.setEndTime(maxEndTime);
-        epic.setDuration(duration);
+    // Применяет набор изменений, пересчитывая каждый затронутый эпик один раз в конце.
+    // Это не транзакция с откатом: при исключении уже применённые изменения сохраняются
+    @Override
+    public void inBatch(Consumer<TaskManager> batch) {
+        batchDepth++;
+        try {
+            batch.accept(this);
+        } finally {
+            if (--batchDepth == 0) {
+                completeBatch();
+            }
+        }
+    }
+
+    protected boolean isInBatch() {
+        return batchDepth > 0;
+    }
+
+    protected void completeBatch() {
+        for (int epicId : pendingEpics) {
+            Epic epic = epics.get(epicId);
+            if (epic != null) {
+                recalculateEpic(epic);
+            }
+        }
+        pendingEpics.clear();
+    }
+
+    protected void refreshEpic(Epic epic) {
+        if (isInBatch()) {
+            pendingEpics.add(epic.getId());
+        } else {
+            recalculateEpic(epic);
+        }
+    }
+
+    // Поля эпика берутся из сводки подзадач за O(log n), без прохода по подзадачам
+    protected void recalculateEpic(Epic epic) {
+        EpicAggregate aggregate = aggregateOf(epic);
+        epic.setStatus(aggregate.getStatus());
+        epic.setStartTime(aggregate.getStartTime());
+        epic.setEndTime(aggregate.getEndTime());
+        epic.setDuration(aggregate.getDuration());
+    }
+
+    private EpicAggregate aggregateOf(Epic epic) {
+        EpicAggregate aggregate = epicAggregates.get(epic.getId());
+        if (aggregate == null) {
+            aggregate = new EpicAggregate();
+            for (Subtask subtask : getEpicSubtasks(epic.getId())) {
+                aggregate.put(subtask);
+            }
+            epicAggregates.put(epic.getId(), aggregate);
+        }
+        return aggregate;
+    }
+
+    // Для изменений в обход методов менеджера, например при чтении файла: сводка будет построена заново
+    protected void forgetAggregate(int epicId) {
+        epicAggregates.remove(epicId);
     }
 
     @Override
     public List<Task> getPrioritizedTasks() {
-        if (timeOrderedTasks.isEmpty()) {
+        if (timeIndex.isEmpty()) {
             throw new NotFoundException("Список сортировки пуст!");
         }
-        return new ArrayList<>(timeOrderedTasks);
+        return timeIndex.getAll();
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit, Integer after) {
+        return timeIndex.getPage(from, to, limit, after);
     }
 
     protected void checkForTimeConflicts(Task task) {
-        boolean hasConflict = timeOrderedTasks.stream()
-                .filter(sortedTask -> !sortedTask.equals(task))
-                .anyMatch(sortedTask -> isOverlapping(task, sortedTask));
-        if (hasConflict) {
+        if (timeIndex.findConflict(task.getStartTime(), task.getEndTime(), task) != null) {
             System.out.println("Неверное время или продолжительность у задачи " + task);
             throw new ManagerValidatePriorityException("Невозможно добавить задачу из-за пересечений с уже имеющимися задачами");
         }
     }
 
-    private boolean isOverlapping(Task task1, Task task2) {
-        return task1.getStartTime().isBefore(task2.getEndTime()) && task1.getEndTime().isAfter(task2.getStartTime());
+    @Override
+    public boolean isWindowFree(LocalDateTime start, Duration duration) {
+        return timeIndex.findConflict(start, start.plus(duration), null) == null;
+    }
+
+    @Override
+    public LocalDateTime findFreeWindow(LocalDateTime from, Duration duration) {
+        return timeIndex.findFreeWindow(from, duration);
+    }
+
+    /*
+     * Включает битовую карту слотов заданного размера, например 15 минут. Свободное по карте окно
+     * не требует поиска по дереву; для занятых слотов результат перепроверяется точно, поэтому
+     * задачи, не выровненные по сетке, остаются корректными.
+     */
+    public void enableSlotCalendar(Duration slotSize) {
+        timeIndex.enableSlotCalendar(slotSize);
+    }
+
+    protected void reindexTime(Task previous, Task task) {
+        if (previous != null) {
+            unindexTime(previous);
+        }
+        if (task.getStartTime() != null) {
+            indexTime(task);
+        }
+    }
+
+    protected void indexTime(Task task) {
+        timeIndex.add(task);
+    }
+
+    protected void unindexTime(Task task) {
+        if (task != null) {
+            timeIndex.remove(task.getId());
+        }
     }
 }
@@ -0,0 +1,92 @@
+package manager;
+
+import exception.ManagerLoadException;
+import task.TextSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Тексты задач из отображённого в память двоичного снимка. В куче держатся только последние
+ * прочитанные тексты в общем для менеджера LRU-кэше; файл после атомарной замены снимка
+ * остаётся доступен через отображение, пока на него ссылаются задачи.
+ */
+class LazyTextStore implements TextSource {
+    private static final AtomicInteger STORE_IDS = new AtomicInteger();
+
+    private final ByteBuffer buffer;
+    private final Cache cache;
+    private final long storeId = STORE_IDS.incrementAndGet();
+
+    LazyTextStore(ByteBuffer buffer, Cache cache) {
+        this.buffer = buffer;
+        this.cache = cache;
+    }
+
+    @Override
+    public String readName(int offset) {
+        return texts(offset)[0];
+    }
+
+    @Override
+    public String readDescription(int offset) {
+        return texts(offset)[1];
+    }
+
+    private String[] texts(int offset) {
+        long key = storeId << 32 | offset;
+        String[] texts = cache.get(key);
+        if (texts == null) {
+            try {
+                String name = readString(offset);
+                int length = buffer.getInt(offset);
+                String description = readString(offset + Integer.BYTES + Math.max(length, 0));
+                texts = new String[]{name, description};
+            } catch (IndexOutOfBoundsException e) {
+                throw new ManagerLoadException("Ошибка чтения текста задачи из снимка");
+            }
+            cache.put(key, texts);
+        }
+        return texts;
+    }
+
+    // Абсолютные чтения не сдвигают позицию буфера, поэтому безопасны из разных потоков
+    private String readString(int offset) {
+        int length = buffer.getInt(offset);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Ограниченный кэш прочитанных текстов, вытесняет давно не использованные
+    static class Cache {
+        private final Map<Long, String[]> entries;
+
+        Cache(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, String[]> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized String[] get(long key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(long key, String[] texts) {
+            entries.put(key, texts);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
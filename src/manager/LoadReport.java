@@ -0,0 +1,84 @@
+package manager;
+
+import java.time.Duration;
+
+// Время, затраченное на каждую фазу загрузки FileBackedTaskManager
+public class LoadReport {
+    private Duration read = Duration.ZERO;
+    private Duration parse = Duration.ZERO;
+    private Duration link = Duration.ZERO;
+    private Duration journal = Duration.ZERO;
+    private int records;
+    private int chunks;
+    private boolean recoveredFromPrevious;
+
+    public Duration getRead() {
+        return read;
+    }
+
+    public Duration getParse() {
+        return parse;
+    }
+
+    public Duration getLink() {
+        return link;
+    }
+
+    public Duration getJournal() {
+        return journal;
+    }
+
+    public Duration getTotal() {
+        return read.plus(parse).plus(link).plus(journal);
+    }
+
+    public int getRecords() {
+        return records;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    // Текущий снимок повреждён, загружено предыдущее поколение
+    public boolean isRecoveredFromPrevious() {
+        return recoveredFromPrevious;
+    }
+
+    // Фазы чтения и разбора накапливаются по всем файлам снимка: сегментам или предыдущему поколению
+    void addRead(long nanos) {
+        read = read.plusNanos(nanos);
+    }
+
+    void addParse(long nanos, int records, int chunks) {
+        parse = parse.plusNanos(nanos);
+        this.records += records;
+        this.chunks += chunks;
+    }
+
+    void setLink(long nanos) {
+        link = Duration.ofNanos(nanos);
+    }
+
+    void setJournal(long nanos) {
+        journal = Duration.ofNanos(nanos);
+    }
+
+    void setRecoveredFromPrevious() {
+        recoveredFromPrevious = true;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadReport{" +
+                "records= " + records +
+                ", chunks= " + chunks +
+                ", read= " + read.toMillis() + " ms" +
+                ", parse= " + parse.toMillis() + " ms" +
+                ", link= " + link.toMillis() + " ms" +
+                ", journal= " + journal.toMillis() + " ms" +
+                ", total= " + getTotal().toMillis() + " ms" +
+                ", recoveredFromPrevious= " + recoveredFromPrevious +
+                '}';
+    }
+}
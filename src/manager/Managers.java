@@ -1,12 +1,38 @@
 package manager;
 
 public class Managers {
+    // Сколько последних просмотров хранит история по умолчанию: память не растёт со временем работы
+    public static final int DEFAULT_HISTORY_CAPACITY = 1_000;
+    private static final HistoryPolicy DEFAULT_HISTORY_POLICY = new HistoryPolicy(DEFAULT_HISTORY_CAPACITY, null);
+
     public static TaskManager getDefault() {
         HistoryManager manager = getDefaultHistory();
         return new InMemoryTaskManager(manager);
     }
 
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager(getDefaultHistory());
+    }
+
+    // Потокобезопасный менеджер, чья история считает частоту просмотров в sketch
+    public static TaskManager getConcurrent(FrequencySketch sketch) {
+        return new ConcurrentTaskManager(getFrequencyHistory(sketch));
+    }
+
     public static InMemoryHistoryManager getDefaultHistory() {
-        return new InMemoryHistoryManager();
+        return getDefaultHistory(DEFAULT_HISTORY_POLICY);
+    }
+
+    public static InMemoryHistoryManager getDefaultHistory(HistoryPolicy policy) {
+        return new InMemoryHistoryManager(policy);
+    }
+
+    public static IdHistoryManager getIdHistory(HistoryPolicy policy) {
+        return new IdHistoryManager(policy);
+    }
+
+    // Обычная история, которая вдобавок считает частоту просмотров каждого id в sketch
+    public static FrequencyHistoryManager getFrequencyHistory(FrequencySketch sketch) {
+        return new FrequencyHistoryManager(getDefaultHistory(), sketch);
     }
 }
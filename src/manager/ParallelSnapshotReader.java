@@ -0,0 +1,126 @@
+package manager;
+
+import exception.ManagerLoadException;
+import task.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Делит снимок на куски и разбирает их параллельно в общем ForkJoinPool; порядок записей сохраняется
+class ParallelSnapshotReader {
+    // Меньшие куски не выделяются: накладные расходы на задачи превысят выигрыш
+    private static final int MIN_CHUNK_BYTES = 256 * 1024;
+    private static final int MIN_CHUNK_RECORDS = 4096;
+    private static final int CHUNKS_PER_CORE = 4;
+
+    private ParallelSnapshotReader() {
+    }
+
+    static List<Task> readCsv(File file, LoadReport report) {
+        long started = System.nanoTime();
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения");
+        }
+        int headerEnd = indexOf(bytes, 0, bytes.length);
+        int bodyStart = headerEnd + 1;
+        List<int[]> chunks = splitRecords(bytes, bodyStart);
+        // Снимки старого формата без пометки в заголовке загружаются без проверки
+        if (SnapshotChecksum.isChecksummedCsv(bytes, headerEnd)) {
+            SnapshotChecksum.verifyCsv(bytes, chunks.isEmpty() ? bodyStart : chunks.getLast()[1]);
+        }
+        report.addRead(System.nanoTime() - started);
+
+        started = System.nanoTime();
+        List<Task> result = chunks.parallelStream()
+                .map(chunk -> parseRecords(bytes, chunk[0], chunk[1]))
+                .flatMap(List::stream)
+                .toList();
+        report.addParse(System.nanoTime() - started, result.size(), chunks.size());
+        return result;
+    }
+
+    // С кэшем текстов имена и описания не загружаются, а читаются из отображения по требованию
+    static List<Task> readBinary(File file, LoadReport report, LazyTextStore.Cache textCache) {
+        long started = System.nanoTime();
+        ByteBuffer buffer = BinarySnapshot.map(file);
+        BinarySnapshot.verify(buffer);
+        LazyTextStore lazyText = textCache != null ? new LazyTextStore(buffer, textCache) : null;
+        int[] offsets = BinarySnapshot.recordOffsets(buffer);
+        report.addRead(System.nanoTime() - started);
+
+        started = System.nanoTime();
+        int chunkSize = Math.max(MIN_CHUNK_RECORDS, offsets.length / targetChunks() + 1);
+        int chunks = (offsets.length + chunkSize - 1) / chunkSize;
+        List<Task> result = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> BinarySnapshot.readRecords(buffer, offsets, chunk * chunkSize,
+                        Math.min(offsets.length, (chunk + 1) * chunkSize), lazyText))
+                .flatMap(List::stream)
+                .toList();
+        report.addParse(System.nanoTime() - started, result.size(), chunks);
+        return result;
+    }
+
+    private static int targetChunks() {
+        return Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CORE;
+    }
+
+    /*
+     * Один последовательный проход по байтам с учётом кавычек: перевод строки внутри поля в кавычках
+     * не является границей записи. Границы кусков сдвигаются к ближайшему концу записи,
+     * пустая строка завершает список записей, как и в построчном загрузчике.
+     */
+    private static List<int[]> splitRecords(byte[] bytes, int from) {
+        List<int[]> chunks = new ArrayList<>();
+        if (from >= bytes.length || bytes[from] == '\n' || bytes[from] == '\r') {
+            return chunks;
+        }
+        int chunkBytes = Math.max(MIN_CHUNK_BYTES, (bytes.length - from) / targetChunks() + 1);
+        int start = from;
+        boolean quoted = false;
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '"') {
+                quoted = !quoted;
+            } else if (bytes[i] == '\n' && !quoted) {
+                if (i + 1 == bytes.length || bytes[i + 1] == '\n' || bytes[i + 1] == '\r') {
+                    chunks.add(new int[]{start, i + 1});
+                    return chunks;
+                }
+                if (i + 1 - start >= chunkBytes) {
+                    chunks.add(new int[]{start, i + 1});
+                    start = i + 1;
+                }
+            }
+        }
+        if (start < bytes.length) {
+            chunks.add(new int[]{start, bytes.length});
+        }
+        return chunks;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static List<Task> parseRecords(byte[] bytes, int from, int to) {
+        CsvRecordParser parser = new CsvRecordParser(bytes, from, to);
+        List<Task> result = new ArrayList<>();
+        while (parser.hasNext()) {
+            result.add(parser.readTask());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,143 @@
+package manager;
+
+import exception.ManagerSaveException;
+import task.TaskType;
+import util.IntObjectMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * Раскладка снимка по сегментам: задачи, эпики и подзадачи хранятся в отдельных файлах
+ * <saveFile>.segments/<тип>-<первый id>-<последний id>.seg, каждый сегмент держит фиксированный диапазон id.
+ * Мутация помечает грязным только свой сегмент, и запись переписывает только грязные сегменты.
+ */
+class SegmentStore {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(TASK|EPIC|SUBTASK)-(\\d+)-(\\d+)\\.seg");
+
+    record Segment(TaskType type, int index) {
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    // Индекс id -> сегмент нужен для удаления: тип удалённой задачи менеджер уже не знает
+    private final IntObjectMap<Segment> segmentsById = new IntObjectMap<>();
+    private final Set<Segment> dirtySegments = new HashSet<>();
+
+    SegmentStore(File directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    int firstId(Segment segment) {
+        return segment.index() * segmentSize;
+    }
+
+    int lastId(Segment segment) {
+        return firstId(segment) + segmentSize - 1;
+    }
+
+    // Запоминает сегмент задачи, не помечая его грязным, — для задач, прочитанных с диска
+    void index(TaskType type, int id) {
+        segmentsById.put(id, new Segment(type, id / segmentSize));
+    }
+
+    void put(TaskType type, int id) {
+        Segment segment = new Segment(type, id / segmentSize);
+        segmentsById.put(id, segment);
+        dirtySegments.add(segment);
+    }
+
+    void remove(int id) {
+        Segment segment = segmentsById.remove(id);
+        if (segment != null) {
+            dirtySegments.add(segment);
+        }
+    }
+
+    void clear(TaskType type) {
+        Iterator<Segment> iterator = segmentsById.values().iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.type() == type) {
+                dirtySegments.add(segment);
+                iterator.remove();
+            }
+        }
+    }
+
+    // Помечает все известные сегменты, например после неудачной записи или при переходе на сегменты
+    void markAll() {
+        dirtySegments.addAll(segmentsById.values());
+        for (File file : files()) {
+            if (isCurrent(file)) {
+                dirtySegments.add(segmentOf(file));
+            }
+        }
+    }
+
+    List<Segment> takeDirty() {
+        List<Segment> dirty = new ArrayList<>(dirtySegments);
+        dirtySegments.clear();
+        return dirty;
+    }
+
+    File fileOf(Segment segment) {
+        return new File(directory, segment.type() + "-" + firstId(segment) + "-" + lastId(segment) + ".seg");
+    }
+
+    // Файл записан с другим размером сегмента и после перезаписи всех сегментов удаляется
+    boolean isCurrent(File file) {
+        Matcher matcher = matcher(file);
+        long first = Long.parseLong(matcher.group(2));
+        long last = Long.parseLong(matcher.group(3));
+        return first % segmentSize == 0 && last - first + 1 == segmentSize;
+    }
+
+    // Сегменты в порядке загрузки: задачи, эпики, подзадачи, внутри типа — по возрастанию id
+    List<File> files() {
+        File[] files = directory.listFiles((dir, name) -> SEGMENT_NAME.matcher(name).matches());
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        List<File> result = new ArrayList<>(Arrays.asList(files));
+        result.sort(Comparator.comparing((File file) -> TaskType.valueOf(matcher(file).group(1)))
+                .thenComparingLong(file -> Long.parseLong(matcher(file).group(2))));
+        return result;
+    }
+
+    void createDirectory() {
+        try {
+            Files.createDirectories(directory.toPath());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка создания каталога сегментов");
+        }
+    }
+
+    // Пустой сегмент удаляется вместе с предыдущим поколением
+    static void delete(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(FileBackedTaskManager.previousSnapshotFile(file).toPath());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка удаления сегмента");
+        }
+    }
+
+    private Segment segmentOf(File file) {
+        Matcher matcher = matcher(file);
+        return new Segment(TaskType.valueOf(matcher.group(1)), Integer.parseInt(matcher.group(2)) / segmentSize);
+    }
+
+    private static Matcher matcher(File file) {
+        Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Не файл сегмента: " + file);
+        }
+        return matcher;
+    }
+}
@@ -0,0 +1,130 @@
+package manager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Битовая карта слотов сетки планирования: один бит на слот, страница long[] на каждый день.
+ * Страницы заводятся только для дней, где есть задачи, и удаляются, когда день освобождается.
+ * Слот помечается, если задача задевает его хотя бы частично, поэтому свободный по карте интервал
+ * гарантированно свободен, а занятый нужно перепроверить точно.
+ */
+class SlotCalendar {
+    private static final long SECONDS_PER_DAY = Duration.ofDays(1).getSeconds();
+
+    private final long slotSeconds;
+    private final int slotsPerDay;
+    private final Map<Long, long[]> pages = new HashMap<>();
+
+    SlotCalendar(Duration slotSize) {
+        long seconds = slotSize.getSeconds();
+        if (seconds <= 0 || slotSize.getNano() != 0 || SECONDS_PER_DAY % seconds != 0) {
+            throw new IllegalArgumentException("Размер слота должен быть целым числом секунд и делить сутки нацело");
+        }
+        this.slotSeconds = seconds;
+        this.slotsPerDay = (int) (SECONDS_PER_DAY / seconds);
+    }
+
+    Duration getSlotSize() {
+        return Duration.ofSeconds(slotSeconds);
+    }
+
+    LocalDateTime slotStart(LocalDateTime time) {
+        return LocalDateTime.ofEpochSecond(firstSlot(time) * slotSeconds, 0, ZoneOffset.UTC);
+    }
+
+    LocalDateTime slotEnd(LocalDateTime time) {
+        return LocalDateTime.ofEpochSecond((firstSlot(time) + 1) * slotSeconds, 0, ZoneOffset.UTC);
+    }
+
+    boolean isFree(LocalDateTime start, LocalDateTime end) {
+        long first = firstSlot(start);
+        long last = lastSlot(start, end);
+        for (long day = Math.floorDiv(first, slotsPerDay); day <= Math.floorDiv(last, slotsPerDay); day++) {
+            long[] page = pages.get(day);
+            if (page == null) {
+                continue;
+            }
+            int from = fromSlot(day, first);
+            int to = toSlot(day, last);
+            for (int word = from >>> 6; word <= to >>> 6; word++) {
+                if ((page[word] & mask(word, from, to)) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    void occupy(LocalDateTime start, LocalDateTime end) {
+        update(start, end, true);
+    }
+
+    void release(LocalDateTime start, LocalDateTime end) {
+        update(start, end, false);
+    }
+
+    void clear() {
+        pages.clear();
+    }
+
+    private void update(LocalDateTime start, LocalDateTime end, boolean occupied) {
+        long first = firstSlot(start);
+        long last = lastSlot(start, end);
+        for (long day = Math.floorDiv(first, slotsPerDay); day <= Math.floorDiv(last, slotsPerDay); day++) {
+            long[] page = pages.get(day);
+            if (page == null) {
+                if (!occupied) {
+                    continue;
+                }
+                page = new long[(slotsPerDay + Long.SIZE - 1) / Long.SIZE];
+                pages.put(day, page);
+            }
+            int from = fromSlot(day, first);
+            int to = toSlot(day, last);
+            for (int word = from >>> 6; word <= to >>> 6; word++) {
+                page[word] = occupied ? page[word] | mask(word, from, to) : page[word] & ~mask(word, from, to);
+            }
+            if (!occupied && isEmpty(page)) {
+                pages.remove(day);
+            }
+        }
+    }
+
+    private int fromSlot(long day, long first) {
+        return day == Math.floorDiv(first, slotsPerDay) ? Math.floorMod(first, slotsPerDay) : 0;
+    }
+
+    private int toSlot(long day, long last) {
+        return day == Math.floorDiv(last, slotsPerDay) ? Math.floorMod(last, slotsPerDay) : slotsPerDay - 1;
+    }
+
+    private static boolean isEmpty(long[] page) {
+        for (long word : page) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Биты слотов from..to включительно, попадающие в слово word страницы
+    private static long mask(int word, int from, int to) {
+        int low = Math.max(from, word << 6) - (word << 6);
+        int high = Math.min(to, (word << 6) + 63) - (word << 6);
+        return (-1L >>> (63 - high)) & (-1L << low);
+    }
+
+    private long firstSlot(LocalDateTime start) {
+        return Math.floorDiv(start.toEpochSecond(ZoneOffset.UTC), slotSeconds);
+    }
+
+    // Окончание не входит в интервал; задача нулевой длительности занимает слот своего начала
+    private long lastSlot(LocalDateTime start, LocalDateTime end) {
+        long endSecond = end.toEpochSecond(ZoneOffset.UTC) + (end.getNano() > 0 ? 1 : 0);
+        return Math.max(firstSlot(start), Math.floorDiv(endSecond - 1, slotSeconds));
+    }
+}
@@ -0,0 +1,130 @@
+package manager;
+
+import exception.ManagerLoadException;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/*
+ * Контрольные суммы CRC32C по блокам снимка: блоки проверяются независимо, поэтому параллельно.
+ * В CSV заголовок с пометкой crc32c обязывает файл заканчиваться пустой строкой и строкой
+ * "crc32c,<размер блока>,<суммы в hex>", которая покрывает байты от начала файла до пустой строки.
+ */
+class SnapshotChecksum {
+    static final int BLOCK_SIZE = 64 * 1024;
+    static final String CSV_MARKER = "crc32c";
+
+    private SnapshotChecksum() {
+    }
+
+    // Считает CRC32C каждого блока по мере записи, байты передаются дальше без изменений
+    static class Output extends FilterOutputStream {
+        private final CRC32C crc = new CRC32C();
+        private int[] checksums = new int[16];
+        private int blocks;
+        private int blockFill;
+
+        Output(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            crc.update(b);
+            if (++blockFill == BLOCK_SIZE) {
+                completeBlock();
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            while (length > 0) {
+                int part = Math.min(length, BLOCK_SIZE - blockFill);
+                crc.update(bytes, offset, part);
+                offset += part;
+                length -= part;
+                blockFill += part;
+                if (blockFill == BLOCK_SIZE) {
+                    completeBlock();
+                }
+            }
+        }
+
+        // Закрывает неполный последний блок; дальнейшие байты в контрольные суммы не входят
+        int[] finish() {
+            if (blockFill > 0) {
+                completeBlock();
+            }
+            return Arrays.copyOf(checksums, blocks);
+        }
+
+        private void completeBlock() {
+            if (blocks == checksums.length) {
+                checksums = Arrays.copyOf(checksums, blocks * 2);
+            }
+            checksums[blocks++] = (int) crc.getValue();
+            crc.reset();
+            blockFill = 0;
+        }
+    }
+
+    static void verify(ByteBuffer data, int length, int blockSize, int[] checksums) {
+        if (blockSize <= 0 || (length + (long) blockSize - 1) / blockSize != checksums.length) {
+            throw new ManagerLoadException("Снимок повреждён: неверное число блоков");
+        }
+        int broken = IntStream.range(0, checksums.length)
+                .parallel()
+                .filter(block -> {
+                    int from = block * blockSize;
+                    CRC32C crc = new CRC32C();
+                    crc.update(data.slice(from, Math.min(blockSize, length - from)));
+                    return (int) crc.getValue() != checksums[block];
+                })
+                .findFirst()
+                .orElse(-1);
+        if (broken >= 0) {
+            throw new ManagerLoadException("Снимок повреждён: не совпала контрольная сумма блока " + broken);
+        }
+    }
+
+    static String csvTrailer(int[] checksums) {
+        StringBuilder sb = new StringBuilder(CSV_MARKER).append(',').append(BLOCK_SIZE);
+        for (int checksum : checksums) {
+            sb.append(',').append(Integer.toHexString(checksum));
+        }
+        return sb.append('\n').toString();
+    }
+
+    static boolean isChecksummedCsv(byte[] bytes, int headerEnd) {
+        int end = headerEnd > 0 && bytes[headerEnd - 1] == '\r' ? headerEnd - 1 : headerEnd;
+        int start = end - CSV_MARKER.length();
+        return start >= 0
+                && CSV_MARKER.equals(new String(bytes, start, CSV_MARKER.length(), StandardCharsets.US_ASCII));
+    }
+
+    static void verifyCsv(byte[] bytes, int recordsEnd) {
+        String[] fields = new String(bytes, recordsEnd, bytes.length - recordsEnd, StandardCharsets.UTF_8)
+                .strip()
+                .split(",");
+        if (!CSV_MARKER.equals(fields[0]) || fields.length < 2) {
+            throw new ManagerLoadException("Снимок повреждён: нет контрольных сумм");
+        }
+        try {
+            int[] checksums = new int[fields.length - 2];
+            for (int i = 0; i < checksums.length; i++) {
+                checksums[i] = Integer.parseUnsignedInt(fields[i + 2], 16);
+            }
+            verify(ByteBuffer.wrap(bytes), recordsEnd, Integer.parseInt(fields[1]), checksums);
+        } catch (NumberFormatException e) {
+            throw new ManagerLoadException("Снимок повреждён: неверная строка контрольных сумм");
+        }
+    }
+}
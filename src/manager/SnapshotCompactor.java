@@ -0,0 +1,49 @@
+package manager;
+
+import exception.ManagerSaveException;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Фоновый поток, который по условиям политики сворачивает журнал в новый снимок
+class SnapshotCompactor implements Closeable {
+    private final FileBackedTaskManager manager;
+    private final TaskJournal journal;
+    private final CompactionPolicy policy;
+    private final ScheduledExecutorService executor;
+
+    SnapshotCompactor(FileBackedTaskManager manager, TaskJournal journal, CompactionPolicy policy) {
+        this.manager = manager;
+        this.journal = journal;
+        this.policy = policy;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = policy.getCheckInterval().toMillis();
+        executor.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void check() {
+        try {
+            if (policy.shouldCompact(journal.size(), journal.records(), journal.idleTime())) {
+                manager.compact();
+            }
+        } catch (ManagerSaveException e) {
+            System.out.println("Ошибка фонового сжатия журнала: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(policy.getCheckInterval().toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
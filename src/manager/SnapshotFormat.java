@@ -0,0 +1,8 @@
+package manager;
+
+public enum SnapshotFormat {
+    // Текстовый CSV, совместимый с прежними файлами
+    CSV,
+    // Компактный двоичный формат, читается через отображение файла в память
+    BINARY
+}
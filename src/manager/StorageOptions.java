@@ -0,0 +1,104 @@
+package manager;
+
+import java.time.Duration;
+
+// Настройки хранения FileBackedTaskManager
+public class StorageOptions {
+    private boolean journaled;
+    private Durability durability = Durability.SYNCHRONOUS;
+    private Duration flushInterval = Duration.ofMillis(50);
+    private SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    private int segmentSize;
+    private int lazyTextCacheSize;
+    private int idBlockSize = IdAllocator.DEFAULT_BLOCK_SIZE;
+
+    public boolean isJournaled() {
+        return journaled;
+    }
+
+    public StorageOptions setJournaled(boolean journaled) {
+        this.journaled = journaled;
+        return this;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public StorageOptions setDurability(Durability durability) {
+        this.durability = durability;
+        return this;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    // Для GROUP_COMMIT — период записи, для OS_BUFFERED — пауза в мутациях перед записью
+    public StorageOptions setFlushInterval(Duration flushInterval) {
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Интервал записи должен быть положительным");
+        }
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return snapshotFormat;
+    }
+
+    // Формат, в котором пишутся новые снимки; при загрузке формат определяется по содержимому файла
+    public StorageOptions setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+        return this;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    // Число id в одном файле-сегменте; 0 — весь снимок хранится в одном файле
+    public StorageOptions setSegmentSize(int segmentSize) {
+        if (segmentSize < 0) {
+            throw new IllegalArgumentException("Размер сегмента не может быть отрицательным");
+        }
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    public int getLazyTextCacheSize() {
+        return lazyTextCacheSize;
+    }
+
+    // Ленивая загрузка двоичных снимков: имена и описания читаются при обращении и держатся
+    // в кэше на столько задач; 0 — тексты загружаются сразу. Снимки CSV всегда загружаются целиком
+    public StorageOptions setLazyTextCacheSize(int lazyTextCacheSize) {
+        if (lazyTextCacheSize < 0) {
+            throw new IllegalArgumentException("Размер кэша текстов не может быть отрицательным");
+        }
+        this.lazyTextCacheSize = lazyTextCacheSize;
+        return this;
+    }
+
+    public int getIdBlockSize() {
+        return idBlockSize;
+    }
+
+    // Сколько id резервируется за одну запись границы в <saveFile>.ids; после перезапуска
+    // неиспользованный остаток блока пропускается
+    public StorageOptions setIdBlockSize(int idBlockSize) {
+        if (idBlockSize <= 0) {
+            throw new IllegalArgumentException("Размер блока id должен быть положительным");
+        }
+        this.idBlockSize = idBlockSize;
+        return this;
+    }
+
+    boolean isWriteBehind() {
+        return durability == Durability.GROUP_COMMIT || durability == Durability.OS_BUFFERED;
+    }
+
+    boolean isFsync() {
+        return durability == Durability.FSYNC_PER_OPERATION || durability == Durability.GROUP_COMMIT;
+    }
+}
@@ -0,0 +1,170 @@
+package manager;
+
+import exception.ManagerLoadException;
+import exception.ManagerSaveException;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+// Журнал изменений: каждая мутация дописывается в конец файла одной строкой
+class TaskJournal implements Closeable {
+    private final File file;
+    private FileOutputStream fileOut;
+    private OutputStream out;
+    // Счётчики читает поток сжатия, поэтому они volatile
+    private volatile long size;
+    private volatile int records;
+    // Записи отложенного при сжатии журнала, ещё не попавшие в снимок: порог сжатия учитывает и их
+    private volatile long rotatedSize;
+    private volatile int rotatedRecords;
+    private volatile long lastAppendNanos = System.nanoTime();
+
+    TaskJournal(File file) {
+        this.file = file;
+        this.size = file.length();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    long size() {
+        return size + rotatedSize;
+    }
+
+    int records() {
+        return records + rotatedRecords;
+    }
+
+    void setRecords(int records) {
+        this.records = records;
+    }
+
+    // Отложенный журнал остался от прерванного сжатия и ещё не свёрнут в снимок
+    void setRotated(long size, int records) {
+        this.rotatedSize = size;
+        this.rotatedRecords = records;
+    }
+
+    // Снимок записан: отложенные записи в нём
+    void clearRotated() {
+        setRotated(0, 0);
+    }
+
+    Duration idleTime() {
+        return Duration.ofNanos(System.nanoTime() - lastAppendNanos);
+    }
+
+    // Дописывать может фоновый поток записи, поэтому операции с файлом синхронизированы
+    synchronized void append(List<String> lines, boolean sync) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        try {
+            if (out == null) {
+                boolean midLine = endsMidLine();
+                fileOut = new FileOutputStream(file, true);
+                out = new BufferedOutputStream(fileOut);
+                // Последняя запись без перевода строки: новая не должна склеиться с ней
+                if (midLine) {
+                    out.write('\n');
+                    size++;
+                }
+            }
+            for (String line : lines) {
+                byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                size += bytes.length;
+                records++;
+            }
+            out.flush();
+            if (sync) {
+                fileOut.getChannel().force(false);
+            }
+            lastAppendNanos = System.nanoTime();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи журнала");
+        }
+    }
+
+    // Отрезает оборванный хвост, чтобы следующая запись не дописалась к нему
+    synchronized void truncate(long length) {
+        close();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка усечения журнала");
+        }
+        size = length;
+    }
+
+    private boolean endsMidLine() throws IOException {
+        if (size == 0 || !file.exists()) {
+            return false;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(raf.length() - 1);
+            return raf.read() != '\n';
+        }
+    }
+
+    // Переносит накопленные записи в target и начинает журнал с чистого файла
+    synchronized void rotate(File target) {
+        close();
+        try {
+            if (file.exists()) {
+                Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка ротации журнала");
+        }
+        setRotated(rotatedSize + size, rotatedRecords + records);
+        size = 0;
+        records = 0;
+    }
+
+    // Записи разбираются CsvRecordParser: поля в кавычках могут содержать переводы строк
+    static byte[] readBytes(File file) {
+        if (!file.exists()) {
+            return new byte[0];
+        }
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new ManagerLoadException("Ошибка чтения журнала");
+        }
+    }
+
+    synchronized void delete() {
+        close();
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка удаления журнала");
+        }
+        size = 0;
+        records = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка закрытия журнала");
+        } finally {
+            out = null;
+            fileOut = null;
+        }
+    }
+}
@@ -4,8 +4,11 @@ import task.Epic;
 import task.Subtask;
 import task.Task;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface TaskManager {
     List<Task> getAllTasks();
@@ -57,4 +60,12 @@ public interface TaskManager {
     Subtask getSubtaskWithoutHistory(int subtaskId);
 
     List<Task> getPrioritizedTasks();
+
+    List<Task> getPrioritizedTasks(LocalDateTime from, LocalDateTime to, int limit, Integer after);
+
+    boolean isWindowFree(LocalDateTime start, Duration duration);
+
+    LocalDateTime findFreeWindow(LocalDateTime from, Duration duration);
+
+    void inBatch(Consumer<TaskManager> batch);
 }
@@ -0,0 +1,423 @@
+package manager;
+
+import exception.NotFoundException;
+import task.Task;
+import util.IntHash;
+import util.IntObjectMap;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/*
+ * Индекс задач по времени: дерево по ключу (начало, id) с интервалом, зафиксированным при индексации,
+ * промежутки между задачами для поиска свободного окна и необязательная битовая карта слотов.
+ * Задачи без времени в индекс не входят. Класс не потокобезопасен, синхронизацию обеспечивает менеджер.
+ */
+class TimeIndex {
+    private final NavigableMap<TimeKey, Task> timeOrderedTasks = new TreeMap<>();
+    private final IntObjectMap<TimeKey> timeKeys = new IntObjectMap<>();
+    // Свободные промежутки между задачами для поиска ближайшего окна
+    private final GapIndex gaps = new GapIndex();
+    // Необязательная битовая карта слотов: быстрый отрицательный ответ при проверке пересечений
+    private SlotCalendar slotCalendar;
+
+    boolean isEmpty() {
+        return timeOrderedTasks.isEmpty();
+    }
+
+    List<Task> getAll() {
+        return new ArrayList<>(timeOrderedTasks.values());
+    }
+
+    /*
+     * Страница приоритетного списка: задачи, пересекающие [from, to), не более limit штук, после задачи
+     * с id after. Границы null означают открытый интервал. Выборка идёт по представлениям tailMap/headMap,
+     * поэтому стоит O(log n + limit) независимо от размера доски.
+     */
+    List<Task> getPage(LocalDateTime from, LocalDateTime to, int limit, Integer after) {
+        checkPage(from, to, limit);
+        TimeKey lower = null;
+        if (from != null) {
+            // Задача, начавшаяся раньше from, может заходить в интервал; раньше неё пересечений нет
+            TimeKey first = timeOrderedTasks.lowerKey(TimeKey.probe(from));
+            lower = first != null && first.end().isAfter(from) ? first : TimeKey.probe(from);
+        }
+        boolean inclusive = true;
+        if (after != null) {
+            TimeKey cursor = timeKeys.get(after.intValue());
+            if (cursor == null) {
+                throw new NotFoundException("Задача с ID " + after + " не найдена в списке сортировки.");
+            }
+            if (lower == null || cursor.compareTo(lower) >= 0) {
+                lower = cursor;
+                inclusive = false;
+            }
+        }
+        TimeKey upper = to == null ? null : TimeKey.probe(to);
+        if (lower != null && upper != null && lower.compareTo(upper) >= 0) {
+            return new ArrayList<>();
+        }
+        NavigableMap<TimeKey, Task> view = lower == null ? timeOrderedTasks : timeOrderedTasks.tailMap(lower, inclusive);
+        if (upper != null) {
+            view = view.headMap(upper, false);
+        }
+        List<Task> page = new ArrayList<>(Math.min(limit, 64));
+        for (Task task : view.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(task);
+        }
+        return page;
+    }
+
+    // В порядке ключа окончания сохранённых интервалов не убывают (см. TimeKey):
+    // достаточно проверить ближайшую задачу, начавшуюся раньше окончания новой, — O(log n) вместо прохода по всем.
+    // Возвращает задачу, пересекающую интервал [start, end), кроме прежней версии задачи self
+    Task findConflict(LocalDateTime start, LocalDateTime end, Task self) {
+        if (slotCalendar != null && slotCalendar.isFree(start, end)) {
+            return null;
+        }
+        TimeKey candidate = timeOrderedTasks.lowerKey(TimeKey.probe(end));
+        if (candidate != null && self != null && candidate.id() == self.getId()) {
+            candidate = timeOrderedTasks.lowerKey(candidate);
+        }
+        return candidate != null && candidate.overlaps(start, end) ? timeOrderedTasks.get(candidate) : null;
+    }
+
+    /*
+     * Начало самого раннего свободного окна длительностью duration, не раньше from.
+     * Окно ищется по индексу промежутков между задачами, а не перебором расписания.
+     */
+    LocalDateTime findFreeWindow(LocalDateTime from, Duration duration) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Продолжительность окна не может быть отрицательной");
+        }
+        long length = duration.getSeconds() + (duration.getNano() > 0 ? 1 : 0);
+        long start = gaps.findFirst(ceilSeconds(from), length);
+        if (start == GapIndex.MAX) {
+            throw new NotFoundException("Свободное окно не найдено");
+        }
+        return LocalDateTime.ofEpochSecond(start, 0, ZoneOffset.UTC);
+    }
+
+    // Неизменяемая копия индекса для чтения без блокировок; дерево уже упорядочено, поэтому копия строится за O(n)
+    Snapshot snapshot() {
+        return new Snapshot(timeOrderedTasks);
+    }
+
+    void enableSlotCalendar(Duration slotSize) {
+        slotCalendar = new SlotCalendar(slotSize);
+        timeOrderedTasks.keySet().forEach(key -> slotCalendar.occupy(key.start(), key.end()));
+    }
+
+    void add(Task task) {
+        remove(task.getId());
+        TimeKey key = new TimeKey(task.getStartTime(), task.getEndTime(), task.getId());
+        timeOrderedTasks.put(key, task);
+        timeKeys.put(task.getId(), key);
+        // Задача делит промежуток между соседями на два
+        long previousEnd = previousEnd(key);
+        long nextStart = nextStart(key);
+        if (previousEnd < nextStart) {
+            gaps.remove(previousEnd);
+        }
+        gaps.put(previousEnd, floorSeconds(key.start()));
+        gaps.put(ceilSeconds(key.end()), nextStart);
+        if (slotCalendar != null) {
+            slotCalendar.occupy(key.start(), key.end());
+        }
+    }
+
+    // Удаление идёт по ключу, запомненному при индексации, поэтому не зависит от текущих полей задачи
+    void remove(int id) {
+        TimeKey key = timeKeys.remove(id);
+        if (key == null) {
+            return;
+        }
+        timeOrderedTasks.remove(key);
+        // Промежутки по обе стороны задачи сливаются в один
+        long previousEnd = previousEnd(key);
+        long nextStart = nextStart(key);
+        long start = floorSeconds(key.start());
+        long end = ceilSeconds(key.end());
+        if (previousEnd < start) {
+            gaps.remove(previousEnd);
+        }
+        if (end < nextStart) {
+            gaps.remove(end);
+        }
+        gaps.put(previousEnd, nextStart);
+        if (slotCalendar == null) {
+            return;
+        }
+        slotCalendar.release(key.start(), key.end());
+        // Крайние слоты могли делить соседние задачи, не выровненные по сетке: возвращаем их биты
+        LocalDateTime from = slotCalendar.slotStart(key.start());
+        LocalDateTime to = slotCalendar.slotEnd(key.end());
+        TimeKey neighbour = timeOrderedTasks.lowerKey(TimeKey.probe(from));
+        if (neighbour != null && neighbour.end().isAfter(from)) {
+            slotCalendar.occupy(neighbour.start(), neighbour.end());
+        }
+        for (TimeKey inside : timeOrderedTasks.subMap(TimeKey.probe(from), TimeKey.probe(to)).keySet()) {
+            slotCalendar.occupy(inside.start(), inside.end());
+        }
+    }
+
+    private static void checkPage(LocalDateTime from, LocalDateTime to, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("Конец интервала раньше его начала");
+        }
+    }
+
+    // Наибольшее окончание среди задач до key: окончания вдоль дерева не убывают, поэтому это окончание соседа
+    private long previousEnd(TimeKey key) {
+        TimeKey previous = timeOrderedTasks.lowerKey(key);
+        return previous == null ? GapIndex.MIN : ceilSeconds(previous.end());
+    }
+
+    private long nextStart(TimeKey key) {
+        TimeKey next = timeOrderedTasks.higherKey(key);
+        return next == null ? GapIndex.MAX : floorSeconds(next.start());
+    }
+
+    // Промежутки хранятся с точностью до секунды и округляются внутрь, чтобы окно не задело соседние задачи
+    private static long floorSeconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long ceilSeconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) + (time.getNano() > 0 ? 1 : 0);
+    }
+
+    /*
+     * Ключ индекса по времени: начало, затем окончание, затем id. Сохранённые интервалы не пересекаются,
+     * а задача нулевой длительности может стоять только на границе другой; при таком порядке она идёт
+     * раньше длинной задачи с тем же началом, поэтому окончания вдоль дерева не убывают.
+     * На этом держатся проверка пересечений по одному соседу и промежутки между соседями.
+     */
+    private record TimeKey(LocalDateTime start, LocalDateTime end, int id) implements Comparable<TimeKey> {
+        // Граница поиска, лежащая перед всеми задачами с тем же началом
+        static TimeKey probe(LocalDateTime time) {
+            return new TimeKey(time, time, Integer.MIN_VALUE);
+        }
+
+        boolean overlaps(LocalDateTime from, LocalDateTime to) {
+            return from.isBefore(end) && to.isAfter(start);
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byStart = start.compareTo(other.start);
+            if (byStart != 0) {
+                return byStart;
+            }
+            int byEnd = end.compareTo(other.end);
+            return byEnd != 0 ? byEnd : Integer.compare(id, other.id);
+        }
+    }
+
+    /*
+     * Снимок индекса: начала, окончания и задачи лежат в массивах в порядке (начало, id), поиск идёт
+     * бинарный. Свободные промежутки между задачами лежат в массивах рядом, а дерево максимумов над их
+     * длинами находит первое подходящее окно за O(log n), как GapIndex. Снимок не меняется после
+     * построения, поэтому его читают любые потоки без блокировок.
+     */
+    static final class Snapshot {
+        private final LocalDateTime[] starts;
+        private final LocalDateTime[] ends;
+        private final Task[] tasks;
+        // Позиция задачи в массивах по её id — для курсора страницы: ключи и позиции + 1, 0 — пустая ячейка
+        private final int[] positionKeys;
+        private final int[] positions;
+        private final List<Task> all;
+        // Промежутки в секундах эпохи, упорядоченные по началу; крайние бесконечны
+        private final long[] gapStarts;
+        private final long[] gapEnds;
+        // Дерево максимумов длин промежутков: корень в ячейке 1, листья с gapTreeLeaves
+        private final long[] gapTree;
+        private final int gapTreeLeaves;
+
+        private Snapshot(NavigableMap<TimeKey, Task> index) {
+            int size = index.size();
+            starts = new LocalDateTime[size];
+            ends = new LocalDateTime[size];
+            tasks = new Task[size];
+            positionKeys = new int[Integer.highestOneBit(Math.max(1, size)) * 4];
+            positions = new int[positionKeys.length];
+            long[] gapStartsBuffer = new long[size + 1];
+            long[] gapEndsBuffer = new long[size + 1];
+            int gapCount = 0;
+            long previousEnd = GapIndex.MIN;
+            int position = 0;
+            for (Map.Entry<TimeKey, Task> entry : index.entrySet()) {
+                TimeKey key = entry.getKey();
+                starts[position] = key.start();
+                ends[position] = key.end();
+                tasks[position] = entry.getValue();
+                indexPosition(key.id(), position);
+                long start = floorSeconds(key.start());
+                if (previousEnd < start) {
+                    gapStartsBuffer[gapCount] = previousEnd;
+                    gapEndsBuffer[gapCount++] = start;
+                }
+                // Окончания не убывают вдоль ключа; максимум страхует промежутки и от округления до секунд
+                previousEnd = Math.max(previousEnd, ceilSeconds(key.end()));
+                position++;
+            }
+            gapStartsBuffer[gapCount] = previousEnd;
+            gapEndsBuffer[gapCount++] = GapIndex.MAX;
+            gapStarts = Arrays.copyOf(gapStartsBuffer, gapCount);
+            gapEnds = Arrays.copyOf(gapEndsBuffer, gapCount);
+            gapTreeLeaves = Integer.highestOneBit(Math.max(1, gapCount - 1)) << 1;
+            gapTree = new long[gapTreeLeaves * 2];
+            Arrays.fill(gapTree, -1);
+            for (int gap = 0; gap < gapCount; gap++) {
+                gapTree[gapTreeLeaves + gap] = gapLength(gap);
+            }
+            for (int node = gapTreeLeaves - 1; node > 0; node--) {
+                gapTree[node] = Math.max(gapTree[2 * node], gapTree[2 * node + 1]);
+            }
+            all = Collections.unmodifiableList(Arrays.asList(tasks));
+        }
+
+        boolean isEmpty() {
+            return tasks.length == 0;
+        }
+
+        // Список общий для всех читателей снимка, поэтому только для чтения
+        List<Task> getAll() {
+            return all;
+        }
+
+        // Те же правила, что у TimeIndex.getPage, по позициям в массивах
+        List<Task> getPage(LocalDateTime from, LocalDateTime to, int limit, Integer after) {
+            checkPage(from, to, limit);
+            int lower = 0;
+            if (from != null) {
+                lower = firstStartingAt(from);
+                if (lower > 0 && ends[lower - 1].isAfter(from)) {
+                    lower--;
+                }
+            }
+            if (after != null) {
+                int cursor = positionOf(after);
+                if (cursor < 0) {
+                    throw new NotFoundException("Задача с ID " + after + " не найдена в списке сортировки.");
+                }
+                lower = Math.max(lower, cursor + 1);
+            }
+            int upper = to == null ? tasks.length : firstStartingAt(to);
+            if (lower >= upper) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>(all.subList(lower, lower + Math.min(limit, upper - lower)));
+        }
+
+        Task findConflict(LocalDateTime start, LocalDateTime end) {
+            int candidate = firstStartingAt(end) - 1;
+            return candidate >= 0 && start.isBefore(ends[candidate]) && end.isAfter(starts[candidate])
+                    ? tasks[candidate] : null;
+        }
+
+        // Те же правила, что у TimeIndex.findFreeWindow и GapIndex.findFirst
+        LocalDateTime findFreeWindow(LocalDateTime from, Duration duration) {
+            if (duration.isNegative()) {
+                throw new IllegalArgumentException("Продолжительность окна не может быть отрицательной");
+            }
+            long length = duration.getSeconds() + (duration.getNano() > 0 ? 1 : 0);
+            long start = ceilSeconds(from);
+            // Последний промежуток, начавшийся не позже start
+            int containing = firstGapAfter(start) - 1;
+            if (containing >= 0 && (gapEnds[containing] == GapIndex.MAX || gapEnds[containing] - start >= length)) {
+                return LocalDateTime.ofEpochSecond(start, 0, ZoneOffset.UTC);
+            }
+            int next = firstFit(1, 0, gapTreeLeaves, containing + 1, length);
+            if (next < 0) {
+                throw new NotFoundException("Свободное окно не найдено");
+            }
+            return LocalDateTime.ofEpochSecond(gapStarts[next], 0, ZoneOffset.UTC);
+        }
+
+        private long gapLength(int gap) {
+            return gapStarts[gap] == GapIndex.MIN || gapEnds[gap] == GapIndex.MAX
+                    ? GapIndex.MAX : gapEnds[gap] - gapStarts[gap];
+        }
+
+        // Самый левый промежуток с номером не меньше first и длиной не меньше length в поддереве node
+        private int firstFit(int node, int low, int high, int first, long length) {
+            if (high <= first || gapTree[node] < length) {
+                return -1;
+            }
+            if (high - low == 1) {
+                return low;
+            }
+            int middle = (low + high) >>> 1;
+            int left = firstFit(2 * node, low, middle, first, length);
+            return left >= 0 ? left : firstFit(2 * node + 1, middle, high, first, length);
+        }
+
+        // Первый промежуток, начинающийся позже time
+        private int firstGapAfter(long time) {
+            int low = 0;
+            int high = gapStarts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (gapStarts[middle] <= time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void indexPosition(int id, int position) {
+            int mask = positionKeys.length - 1;
+            int slot = IntHash.slot(id, mask);
+            while (positions[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            positionKeys[slot] = id;
+            positions[slot] = position + 1;
+        }
+
+        private int positionOf(int id) {
+            int mask = positionKeys.length - 1;
+            int slot = IntHash.slot(id, mask);
+            while (positions[slot] != 0) {
+                if (positionKeys[slot] == id) {
+                    return positions[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        // Первая позиция, где задача начинается не раньше time
+        private int firstStartingAt(LocalDateTime time) {
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle].isBefore(time)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package manager;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/*
+ * Фоновый поток отложенной записи: мутации только помечают хранилище грязным, запись идёт здесь.
+ * Менеджер передаётся в start() уже после своего конструктора, поэтому фоновый поток никогда
+ * не видит его недостроенным.
+ */
+class WriteBehindPersister implements Closeable {
+    // При непрерывном потоке мутаций запись в режиме OS_BUFFERED откладывается не дольше этого числа интервалов
+    private static final int MAX_DEBOUNCE_INTERVALS = 4;
+
+    // Задаётся в start() до первой задачи исполнителя, который и читает поле
+    private FileBackedTaskManager manager;
+    private final Durability durability;
+    private final long intervalNanos;
+    private final ScheduledExecutorService executor;
+    private final Queue<PendingFlush> waiters = new ConcurrentLinkedQueue<>();
+    private ScheduledFuture<?> scheduled;
+    private long firstDirtyNanos;
+
+    private record PendingFlush(long sequence, CompletableFuture<Void> future) {
+    }
+
+    WriteBehindPersister(StorageOptions options) {
+        this.durability = options.getDurability();
+        this.intervalNanos = options.getFlushInterval().toNanos();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    synchronized void start(FileBackedTaskManager manager) {
+        if (this.manager != null) {
+            return;
+        }
+        this.manager = manager;
+        if (durability == Durability.GROUP_COMMIT) {
+            executor.scheduleAtFixedRate(this::flushNow, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    synchronized void mutated() {
+        if (durability != Durability.OS_BUFFERED) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (scheduled == null || scheduled.isDone()) {
+            firstDirtyNanos = now;
+        } else if (now - firstDirtyNanos < intervalNanos * MAX_DEBOUNCE_INTERVALS) {
+            scheduled.cancel(false);
+        } else {
+            return;
+        }
+        scheduled = executor.schedule(this::flushNow, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Future завершается, когда изменения с номером не больше sequence записаны с выбранной надёжностью
+    CompletableFuture<Void> flush(long sequence) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        waiters.add(new PendingFlush(sequence, future));
+        try {
+            executor.execute(this::flushNow);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void flushNow() {
+        if (manager == null) {
+            return;
+        }
+        try {
+            long written = manager.writePendingBehind();
+            Iterator<PendingFlush> iterator = waiters.iterator();
+            while (iterator.hasNext()) {
+                PendingFlush waiter = iterator.next();
+                if (waiter.sequence() <= written) {
+                    iterator.remove();
+                    waiter.future().complete(null);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Ошибка фоновой записи: " + e.getMessage());
+            PendingFlush waiter;
+            while ((waiter = waiters.poll()) != null) {
+                waiter.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            executor.submit(this::flushNow).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            System.out.println("Ошибка фоновой записи: " + e.getMessage());
+        }
+        executor.shutdown();
+    }
+}
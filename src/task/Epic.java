@@ -1,15 +1,17 @@
 package task;
 
 import manager.TaskManager;
+import util.IntSet;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.PrimitiveIterator;
 
 public class Epic extends Task {
-    private final List<Integer> subtaskIds = new ArrayList<>(); // Хранение только ID подзадач
+    private final IntSet subtaskIds = new IntSet(); // Хранение только ID подзадач, в порядке добавления
     private LocalDateTime endTime;
 
     public Epic(String name, String description) {
@@ -41,7 +43,21 @@ public class Epic extends Task {
         this.endTime = endTime;
     }
 
+    // Id подзадач не копируются: в снимок они не пишутся и при загрузке восстанавливаются по подзадачам
+    @Override
+    public Epic copy() {
+        Epic copy = new Epic(null, null);
+        copyFieldsTo(copy);
+        copy.endTime = endTime;
+        return copy;
+    }
+
+    // Копия списка id; для обхода без упаковки — getSubtaskIdSet()
     public List<Integer> getSubtaskIds() {
+        return new ArrayList<>(subtaskIds);
+    }
+
+    public IntSet getSubtaskIdSet() {
         return subtaskIds;
     }
 
@@ -50,7 +66,11 @@ public class Epic extends Task {
     }
 
     public void removeSubtaskId(int subtaskId) {
-        subtaskIds.remove((Integer) subtaskId);
+        subtaskIds.remove(subtaskId);
+    }
+
+    public void clearSubtaskIds() {
+        subtaskIds.clear();
     }
 
     // Метод обновления статуса эпика на основе статусов подзадач
@@ -61,8 +81,8 @@ public class Epic extends Task {
             boolean allDone = true;
             boolean hasInProgress = false;
 
-            for (int subtaskId : subtaskIds) {
-                Subtask subtask = manager.getSubtaskWithoutHistory(subtaskId);
+            for (PrimitiveIterator.OfInt ids = subtaskIds.intIterator(); ids.hasNext(); ) {
+                Subtask subtask = manager.getSubtaskWithoutHistory(ids.nextInt());
                 if (subtask != null) {
                     if (subtask.getStatus() != Status.DONE) {
                         allDone = false;
@@ -33,7 +33,7 @@ public class Subtask extends Task {
     }
 
     public Subtask(int id, String name, String description, Status status, LocalDateTime startTime, Duration duration, int parentId) {
-        super(id, description, name, status, startTime, duration);
+        super(id, name, description, status, startTime, duration);
         this.parentId = parentId;
     }
 
@@ -41,6 +41,13 @@ public class Subtask extends Task {
         return parentId;
     }
 
+    @Override
+    public Subtask copy() {
+        Subtask copy = new Subtask(null, null, parentId);
+        copyFieldsTo(copy);
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Subtask{" +
@@ -11,6 +11,9 @@ public class Task implements Comparable {
     private Status status;
     private Duration duration = Duration.ZERO;
     private LocalDateTime startTime;
+    // Для задач, загруженных лениво: имя и описание читаются из снимка при обращении
+    private transient TextSource textSource;
+    private transient int textOffset;
 
     public Task(String name, String description, Status status) {
         this.name = name;
@@ -21,6 +24,7 @@ public class Task implements Comparable {
     public Task(String name, String description, LocalDateTime startTime, Duration duration) {
         this.name = name;
         this.description = description;
+        this.status = Status.NEW;
         this.duration = duration;
         this.startTime = startTime;
     }
@@ -28,6 +32,7 @@ public class Task implements Comparable {
     public Task(String name, String description, Status status, LocalDateTime startTime, Duration duration) {
         this.name = name;
         this.description = description;
+        this.status = status;
         this.duration = duration;
         this.startTime = startTime;
     }
@@ -73,21 +78,61 @@ public class Task implements Comparable {
 
 
     public String getName() {
+        if (name == null && textSource != null) {
+            return textSource.readName(textOffset);
+        }
         return name;
     }
 
     public void setName(String name) {
+        detachTextSource();
         this.name = name;
     }
 
     public String getDescription() {
+        if (description == null && textSource != null) {
+            return textSource.readDescription(textOffset);
+        }
         return description;
     }
 
+    public void setTextSource(TextSource textSource, int textOffset) {
+        this.textSource = textSource;
+        this.textOffset = textOffset;
+    }
+
+    // Изменённая задача хранит тексты сама, иначе null в одном из полей снова читался бы из снимка
+    private void detachTextSource() {
+        if (textSource != null) {
+            name = getName();
+            description = getDescription();
+            textSource = null;
+        }
+    }
+
     public void setDescription(String description) {
+        detachTextSource();
         this.description = description;
     }
 
+    // Копия полей для записи снимка вне блокировки менеджера; ленивые тексты копируются ссылкой, без чтения
+    public Task copy() {
+        Task copy = new Task(null, null);
+        copyFieldsTo(copy);
+        return copy;
+    }
+
+    protected void copyFieldsTo(Task copy) {
+        copy.name = name;
+        copy.description = description;
+        copy.id = id;
+        copy.status = status;
+        copy.duration = duration;
+        copy.startTime = startTime;
+        copy.textSource = textSource;
+        copy.textOffset = textOffset;
+    }
+
     public int getId() {
         return id;
     }
@@ -0,0 +1,8 @@
+package task;
+
+// Хранилище, из которого имя и описание задачи читаются по требованию, а не держатся в памяти
+public interface TextSource {
+    String readName(int offset);
+
+    String readDescription(int offset);
+}
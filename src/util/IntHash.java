@@ -0,0 +1,21 @@
+package util;
+
+/*
+ * Позиция int-ключа в таблице с открытой адресацией. Ключ умножается на золотое сечение и смешивается
+ * со старшими битами, поэтому последовательные id разбегаются по таблице, а не стоят одним сплошным
+ * кластером, который приходится проходить целиком при промахе и удалении.
+ */
+public final class IntHash {
+    private IntHash() {
+    }
+
+    public static int slot(int key, int mask) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    // Можно ли перенести ключ с домашней позицией home из probe в дыру hole при удалении со сдвигом назад
+    public static boolean canShift(int home, int hole, int probe) {
+        return hole <= probe ? home <= hole || home > probe : home <= hole && home > probe;
+    }
+}
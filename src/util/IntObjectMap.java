@@ -0,0 +1,339 @@
+package util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/*
+ * Хеш-таблица int -> объект без упаковки. Пары лежат подряд в int[] и Object[] в порядке добавления,
+ * а таблица позиций с открытой адресацией находит ключ по перемешанному хешу (IntHash). Удаление
+ * сдвигает цепочку проб назад вместо надгробия, поэтому промах и повторная вставка того же ключа
+ * остаются O(1). Удалённая пара оставляет дыру в массивах; дыры сжимаются, когда их становится
+ * больше, чем пар. Обход идёт в порядке добавления, как у LinkedHashMap, — для id задач это порядок
+ * по возрастанию. Значения null не допускаются. Интерфейс Map поддерживается для совместимости
+ * и упаковывает ключи только при обходе ключей.
+ */
+public class IntObjectMap<V> extends AbstractMap<Integer, V> {
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] keys;
+    // null — дыра на месте удалённой пары
+    private Object[] values;
+    // Позиция пары + 1; 0 — пустая ячейка
+    private int[] table;
+    private int end;
+    private int size;
+    private int modCount;
+
+    public IntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new Object[capacity];
+        table = new int[capacity * 2];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public V get(int key) {
+        int slot = find(key);
+        return slot < 0 ? null : value(table[slot] - 1);
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    public V put(int key, V value) {
+        Objects.requireNonNull(value, "Значение не может быть null");
+        int slot = find(key);
+        if (slot >= 0) {
+            int position = table[slot] - 1;
+            V previous = value(position);
+            values[position] = value;
+            return previous;
+        }
+        if (end == keys.length) {
+            if (end - size > size) {
+                compact();
+            } else {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+                values = Arrays.copyOf(values, values.length * 2);
+                rebuildTable(keys.length * 2);
+            }
+        }
+        keys[end] = key;
+        values[end] = value;
+        insert(key, end);
+        end++;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    public V remove(int key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        V previous = value(table[slot] - 1);
+        removeSlot(slot);
+        if (end - size > size && end > MIN_CAPACITY) {
+            compact();
+        }
+        return previous;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer id ? get(id.intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer id && containsKey(id.intValue());
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer id ? remove(id.intValue()) : null;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, end, null);
+        Arrays.fill(table, 0);
+        end = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new PositionIterator<>() {
+                    @Override
+                    V element(int position) {
+                        return value(position);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                IntObjectMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new PositionIterator<>() {
+                    @Override
+                    Entry<Integer, V> element(int position) {
+                        return new PositionEntry(position);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                IntObjectMap.this.clear();
+            }
+        };
+    }
+
+    private int find(int key) {
+        int mask = table.length - 1;
+        int slot = IntHash.slot(key, mask);
+        while (table[slot] != 0) {
+            if (keys[table[slot] - 1] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int key, int position) {
+        int mask = table.length - 1;
+        int slot = IntHash.slot(key, mask);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = position + 1;
+    }
+
+    // Удаление со сдвигом назад: цепочки проб остаются непрерывными без надгробий
+    private void removeSlot(int slot) {
+        values[table[slot] - 1] = null;
+        int mask = table.length - 1;
+        int hole = slot;
+        int probe = slot;
+        while (true) {
+            probe = (probe + 1) & mask;
+            if (table[probe] == 0) {
+                break;
+            }
+            int home = IntHash.slot(keys[table[probe] - 1], mask);
+            if (IntHash.canShift(home, hole, probe)) {
+                table[hole] = table[probe];
+                hole = probe;
+            }
+        }
+        table[hole] = 0;
+        size--;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int position) {
+        return (V) values[position];
+    }
+
+    private void compact() {
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (values[i] != null) {
+                keys[count] = keys[i];
+                values[count++] = values[i];
+            }
+        }
+        Arrays.fill(values, count, end, null);
+        end = count;
+        rebuildTable(table.length);
+    }
+
+    private void rebuildTable(int capacity) {
+        table = new int[capacity];
+        for (int i = 0; i < end; i++) {
+            if (values[i] != null) {
+                insert(keys[i], i);
+            }
+        }
+    }
+
+    // Обход по позициям; удаление через итератор только оставляет дыру, сжатие ждёт следующего изменения
+    private abstract class PositionIterator<E> implements Iterator<E> {
+        private int next = advance(0);
+        private int current = -1;
+        private int expectedModCount = modCount;
+
+        abstract E element(int position);
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public E next() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = advance(next + 1);
+            return element(current);
+        }
+
+        @Override
+        public void remove() {
+            if (current < 0) {
+                throw new IllegalStateException();
+            }
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeSlot(find(keys[current]));
+            expectedModCount = modCount;
+            current = -1;
+        }
+
+        private int advance(int position) {
+            while (position < end && values[position] == null) {
+                position++;
+            }
+            return position;
+        }
+    }
+
+    private class PositionEntry implements Entry<Integer, V> {
+        private final int position;
+
+        PositionEntry(int position) {
+            this.position = position;
+        }
+
+        @Override
+        public Integer getKey() {
+            return keys[position];
+        }
+
+        @Override
+        public V getValue() {
+            return value(position);
+        }
+
+        @Override
+        public V setValue(V value) {
+            V previous = value(position);
+            values[position] = Objects.requireNonNull(value, "Значение не может быть null");
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof Entry<?, ?> entry && Objects.equals(getKey(), entry.getKey())
+                    && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return keys[position] ^ values[position].hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return keys[position] + "=" + values[position];
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/*
+ * Множество int с порядком добавления. Элементы лежат подряд в int[], а хеш-таблица позиций
+ * с перемешанным хешем (IntHash) и удалением со сдвигом назад даёт contains и remove за O(1)
+ * без упаковки. Удалённый элемент оставляет дыру,
+ * дыры сжимаются, когда их становится больше, чем элементов. Integer.MIN_VALUE служит меткой дыры
+ * и в множество не добавляется.
+ */
+public class IntSet extends AbstractSet<Integer> {
+    private static final int HOLE = Integer.MIN_VALUE;
+    private static final int EMPTY = 0;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] elements = new int[MIN_CAPACITY];
+    // Позиция элемента + 1 в elements; EMPTY — свободная ячейка
+    private int[] table = new int[MIN_CAPACITY * 2];
+    private int end;
+    private int size;
+    private int modCount;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int value) {
+        return find(value) >= 0;
+    }
+
+    public boolean add(int value) {
+        if (value == HOLE) {
+            throw new IllegalArgumentException("Значение " + HOLE + " не поддерживается");
+        }
+        if (contains(value)) {
+            return false;
+        }
+        if (end == elements.length) {
+            if (end - size > size) {
+                compact();
+            } else {
+                elements = Arrays.copyOf(elements, elements.length * 2);
+            }
+        }
+        if ((end + 1) * 2 > table.length) {
+            rebuildTable(Math.max(table.length, Integer.highestOneBit(elements.length) * 4));
+        }
+        elements[end] = value;
+        insert(value, end);
+        end++;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int slot = find(value);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        if (end - size > size && end > MIN_CAPACITY) {
+            compact();
+        }
+        return true;
+    }
+
+    public void forEachInt(IntConsumer action) {
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != HOLE) {
+                action.accept(elements[i]);
+            }
+        }
+    }
+
+    public PrimitiveIterator.OfInt intIterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = advance(0);
+            private int current = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public int nextInt() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                current = next;
+                next = advance(next + 1);
+                return elements[current];
+            }
+
+            // Удаление через итератор только оставляет дыру, сжатие откладывается до следующего изменения
+            @Override
+            public void remove() {
+                if (current < 0) {
+                    throw new IllegalStateException();
+                }
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeSlot(find(elements[current]));
+                expectedModCount = modCount;
+                current = -1;
+            }
+
+            private int advance(int index) {
+                while (index < end && elements[index] == HOLE) {
+                    index++;
+                }
+                return index;
+            }
+        };
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Integer id && contains(id.intValue());
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return add(value.intValue());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof Integer id && remove(id.intValue());
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        end = 0;
+        size = 0;
+        modCount++;
+    }
+
+    public int[] toIntArray() {
+        int[] result = new int[size];
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != HOLE) {
+                result[count++] = elements[i];
+            }
+        }
+        return result;
+    }
+
+    private int find(int value) {
+        int mask = table.length - 1;
+        int slot = IntHash.slot(value, mask);
+        while (table[slot] != EMPTY) {
+            if (elements[table[slot] - 1] == value) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int value, int index) {
+        int mask = table.length - 1;
+        int slot = IntHash.slot(value, mask);
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+    }
+
+    // Удаление со сдвигом назад: цепочки проб остаются непрерывными без надгробий
+    private void removeSlot(int slot) {
+        elements[table[slot] - 1] = HOLE;
+        int mask = table.length - 1;
+        int hole = slot;
+        int probe = slot;
+        while (true) {
+            probe = (probe + 1) & mask;
+            if (table[probe] == EMPTY) {
+                break;
+            }
+            int home = IntHash.slot(elements[table[probe] - 1], mask);
+            if (IntHash.canShift(home, hole, probe)) {
+                table[hole] = table[probe];
+                hole = probe;
+            }
+        }
+        table[hole] = EMPTY;
+        size--;
+        modCount++;
+    }
+
+    private void compact() {
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != HOLE) {
+                elements[count++] = elements[i];
+            }
+        }
+        end = count;
+        rebuildTable(table.length);
+    }
+
+    // Перестраивает таблицу позиций под текущие позиции элементов
+    private void rebuildTable(int capacity) {
+        table = new int[capacity];
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != HOLE) {
+                insert(elements[i], i);
+            }
+        }
+    }
+}
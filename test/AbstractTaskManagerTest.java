@@ -219,4 +219,56 @@ public abstract class AbstractTaskManagerTest<T extends TaskManager> {
         assertEquals("Невозможно добавить задачу из-за пересечений с уже имеющимися задачами",
                 exception.getMessage());
     }
-}
\ No newline at end of file
+
+    // Задача нулевой длительности в начале длинной задачи не должна скрывать её от проверки пересечений
+    @Test
+    void zeroLengthTaskAtSameStartDoesNotHideOverlap() {
+        LocalDateTime start = LocalDateTime.of(2024, 10, 1, 10, 0);
+        taskManager.addNewTask(new Task("Задача", "Описание", start, Duration.ofHours(1)));
+        taskManager.addNewTask(new Task("Веха", "Описание", start, Duration.ZERO));
+        assertThrows(ManagerValidatePriorityException.class, () -> taskManager.addNewTask(
+                new Task("Пересечение", "Описание", start.plusMinutes(30), Duration.ofMinutes(10))));
+        assertFalse(taskManager.isWindowFree(start.plusMinutes(30), Duration.ofMinutes(10)),
+                "Занятое окно считается свободным");
+        assertEquals(2, taskManager.getPrioritizedTasks().size(), "Неверное количество задач");
+        assertEquals(Duration.ZERO, taskManager.getPrioritizedTasks().get(0).getDuration(),
+                "Веха должна идти раньше длинной задачи с тем же началом");
+    }
+
+    // Свободное окно не начинается внутри длинной задачи, даже если рядом с ней стоит веха нулевой длительности
+    @Test
+    void freeWindowSkipsTaskSharingStartWithZeroLengthTask() {
+        LocalDateTime start = LocalDateTime.of(2024, 10, 1, 10, 0);
+        taskManager.addNewTask(new Task("Задача", "Описание", start, Duration.ofHours(1)));
+        final int milestoneId = taskManager.addNewTask(new Task("Веха", "Описание", start, Duration.ZERO));
+        assertEquals(start.plusHours(1), taskManager.findFreeWindow(start, Duration.ofMinutes(5)),
+                "Окно найдено внутри занятого времени");
+        // веха в конце задачи и следующая задача встык
+        taskManager.addNewTask(new Task("Веха в конце", "Описание", start.plusHours(1), Duration.ZERO));
+        taskManager.addNewTask(new Task("Следующая", "Описание", start.plusHours(1), Duration.ofMinutes(30)));
+        assertEquals(start.plusMinutes(90), taskManager.findFreeWindow(start, Duration.ofMinutes(5)),
+                "Окно найдено внутри занятого времени");
+
+        taskManager.deleteTask(milestoneId);
+        assertEquals(start.plusMinutes(90), taskManager.findFreeWindow(start.minusMinutes(5), Duration.ofMinutes(10)),
+                "Удаление вехи открыло занятое время");
+        assertEquals(start.minusMinutes(5), taskManager.findFreeWindow(start.minusMinutes(5), Duration.ofMinutes(5)),
+                "Время до задачи должно быть свободно");
+    }
+
+    @Test
+    void inBatchRecalculatesEpicOnceAtCommit() {
+        final int epicId = taskManager.addNewEpic(epic);
+        taskManager.inBatch(manager -> {
+            manager.addNewSubtask(new Subtask("Подзадача - 1", "Описание - 1", Status.DONE,
+                    LocalDateTime.of(2024, 10, 1, 10, 0), Duration.ofHours(1), epicId));
+            manager.addNewSubtask(new Subtask("Подзадача - 2", "Описание - 2", Status.DONE,
+                    LocalDateTime.of(2024, 10, 1, 12, 0), Duration.ofHours(1), epicId));
+            assertEquals(Status.NEW, epic.getStatus(), "Эпик не должен пересчитываться внутри пакета");
+        });
+        assertEquals(2, taskManager.getEpicSubtasks(epicId).size(), "Неверное количество подзадач.");
+        assertEquals(Status.DONE, epic.getStatus(), "Статус эпика не пересчитан после пакета");
+        assertEquals(LocalDateTime.of(2024, 10, 1, 10, 0), epic.getStartTime(), "Неверное начало эпика");
+        assertEquals(LocalDateTime.of(2024, 10, 1, 13, 0), epic.getEndTime(), "Неверное окончание эпика");
+    }
+}
@@ -0,0 +1,377 @@
+import exception.ManagerValidatePriorityException;
+import exception.NotFoundException;
+import manager.AsyncHistoryManager;
+import manager.ConcurrentTaskManager;
+import manager.HistoryManager;
+import manager.InMemoryHistoryManager;
+import manager.InMemoryTaskManager;
+import manager.Managers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import task.Epic;
+import task.Status;
+import task.Subtask;
+import task.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentTaskManagerTest extends AbstractTaskManagerTest<ConcurrentTaskManager> {
+    private static final int THREADS = 8;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @BeforeEach
+    @Override
+    public void setUp() {
+        taskManager = new ConcurrentTaskManager(Managers.getDefaultHistory());
+        task = new Task("Просто задача - 1", "Описание простой задачи - 1");
+        epic = new Epic(1, "Эпическая задача - 1", "Описание эпической задачи - 1", Status.NEW);
+    }
+
+    @AfterEach
+    @Override
+    public void finish() {
+
+    }
+
+    // Потоки борются за одни и те же часы: каждый час должен достаться ровно одной задаче
+    @Test
+    void parallelAddsKeepIdsUniqueAndScheduleFreeOfOverlaps() throws Exception {
+        AtomicInteger added = new AtomicInteger();
+        runInParallel(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 2_000; i++) {
+                Task scheduled = new Task("Задача", "Описание", START.plusHours(random.nextInt(3_000)),
+                        Duration.ofHours(1));
+                try {
+                    taskManager.addNewTask(scheduled);
+                    added.incrementAndGet();
+                } catch (ManagerValidatePriorityException e) {
+                    // час уже занят
+                }
+                taskManager.addNewTask(new Task("Без времени", "Описание"));
+            }
+        });
+        List<Task> prioritized = taskManager.getPrioritizedTasks();
+        assertEquals(added.get(), prioritized.size(), "Индекс по времени разошёлся с числом добавленных задач");
+        assertEquals(added.get() + THREADS * 2_000, taskManager.getAllTasks().size(), "Задачи потерялись");
+        Set<Integer> ids = new HashSet<>(taskManager.getTasksMap().keySet());
+        assertEquals(taskManager.getAllTasks().size(), ids.size(), "id задач повторяются");
+        assertNoOverlaps(prioritized);
+    }
+
+    // Перенос, удаление и добавление одних и тех же задач из разных потоков
+    @Test
+    void parallelReschedulesAndDeletesKeepIndexConsistentWithStorage() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(taskManager.addNewTask(new Task("Задача " + i, "Описание", START.plusHours(i * 10L),
+                    Duration.ofHours(1))));
+        }
+        runInParallel(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 2_000; i++) {
+                int id = ids.get(random.nextInt(ids.size()));
+                try {
+                    if (random.nextInt(200) == 0) {
+                        taskManager.deleteTask(id);
+                    } else {
+                        taskManager.updateTask(new Task(id, "Задача", "Описание", Status.IN_PROGRESS,
+                                START.plusHours(random.nextInt(2_000)), Duration.ofHours(1)));
+                    }
+                } catch (ManagerValidatePriorityException | NotFoundException e) {
+                    // время занято или задачу уже удалили
+                }
+            }
+        });
+        List<Task> prioritized = taskManager.getPrioritizedTasks(null, null, Integer.MAX_VALUE, null);
+        assertEquals(taskManager.getAllTasks().size(), prioritized.size(), "Индекс по времени разошёлся с хранилищем");
+        for (Task scheduled : prioritized) {
+            assertTrue(taskManager.getTasksMap().get(scheduled.getId()) == scheduled,
+                    "В индексе осталась устаревшая версия задачи " + scheduled.getId());
+        }
+        assertNoOverlaps(prioritized);
+    }
+
+    // Сводки эпиков должны совпадать с пересчётом по подзадачам после параллельных изменений
+    @Test
+    void parallelSubtaskChangesKeepEpicAggregatesConsistent() throws Exception {
+        List<Integer> epicIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            epicIds.add(taskManager.addNewEpic(new Epic("Эпик " + i, "Описание")));
+        }
+        AtomicInteger slot = new AtomicInteger();
+        runInParallel(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<Subtask> mine = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                int action = random.nextInt(3);
+                if (action == 0 || mine.isEmpty()) {
+                    Subtask subtask = new Subtask("Подзадача", "Описание", START.plusHours(slot.getAndIncrement()),
+                            Duration.ofMinutes(30), epicIds.get(random.nextInt(epicIds.size())));
+                    taskManager.addNewSubtask(subtask);
+                    mine.add(subtask);
+                } else if (action == 1) {
+                    Subtask previous = mine.get(random.nextInt(mine.size()));
+                    Subtask updated = new Subtask(previous.getId(), "Подзадача", "Описание",
+                            Status.values()[random.nextInt(Status.values().length)], previous.getStartTime(),
+                            Duration.ofMinutes(random.nextInt(1, 60)), previous.getParentId());
+                    taskManager.updateSubtask(updated);
+                    mine.set(mine.indexOf(previous), updated);
+                } else {
+                    Subtask removed = mine.remove(random.nextInt(mine.size()));
+                    taskManager.deleteSubtask(removed.getId());
+                }
+            }
+        });
+        for (int epicId : epicIds) {
+            Epic saved = taskManager.getEpic(epicId);
+            List<Subtask> epicSubtasks = taskManager.getEpicSubtasks(epicId);
+            Duration duration = epicSubtasks.stream().map(Subtask::getDuration).reduce(Duration.ZERO, Duration::plus);
+            assertEquals(duration, saved.getDuration(), "Длительность эпика разошлась с подзадачами");
+            assertEquals(expectedStatus(epicSubtasks), saved.getStatus(), "Статус эпика разошёлся с подзадачами");
+            assertEquals(epicSubtasks.stream().map(Subtask::getStartTime).min(LocalDateTime::compareTo).orElse(null),
+                    saved.getStartTime(), "Начало эпика разошлось с подзадачами");
+        }
+    }
+
+    // Шестнадцать читателей и один писатель: каждый прочитанный снимок должен быть целым, а не смесью версий
+    @Test
+    void readersSeeConsistentSnapshotsWhileWriterReschedules() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            ids.add(taskManager.addNewTask(new Task("Задача " + i, "Описание", START.plusHours(i * 10L),
+                    Duration.ofHours(1))));
+        }
+        int epicId = taskManager.addNewEpic(new Epic("Эпик", "Описание"));
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        List<Runnable> actions = new ArrayList<>();
+        actions.add(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            try {
+                for (int i = 0; i < 2_000; i++) {
+                    int id = ids.get(random.nextInt(ids.size()));
+                    try {
+                        taskManager.updateTask(new Task(id, "Задача", "Описание", Status.IN_PROGRESS,
+                                START.plusHours(random.nextInt(10_000)), Duration.ofHours(1)));
+                    } catch (ManagerValidatePriorityException e) {
+                        // время занято
+                    }
+                    if (i % 10 == 0) {
+                        taskManager.addNewSubtask(new Subtask("Подзадача", "Описание", epicId));
+                    }
+                }
+            } finally {
+                writing.set(false);
+            }
+        });
+        for (int i = 0; i < 16; i++) {
+            actions.add(() -> {
+                int seenSubtasks = 0;
+                do {
+                    List<Task> prioritized = taskManager.getPrioritizedTasks();
+                    assertEquals(ids.size(), prioritized.size(), "Снимок потерял или задвоил задачу");
+                    assertNoOverlaps(prioritized);
+                    assertNoOverlaps(taskManager.getPrioritizedTasks(START.plusHours(5_000), null, 50, null));
+                    LocalDateTime window = taskManager.findFreeWindow(START.plusHours(5_000), Duration.ofMinutes(30));
+                    assertFalse(window.isBefore(START.plusHours(5_000)), "Окно найдено раньше запрошенного времени");
+                    List<Subtask> epicSubtasks = taskManager.getEpicSubtasks(epicId);
+                    assertTrue(epicSubtasks.size() >= seenSubtasks, "Читатель увидел более старый список подзадач");
+                    seenSubtasks = epicSubtasks.size();
+                    reads.incrementAndGet();
+                } while (writing.get());
+            });
+        }
+        runInParallel(actions);
+        assertTrue(reads.get() >= 16, "Читатели не продвинулись");
+        assertEquals(200, taskManager.getEpicSubtasks(epicId).size(), "Снимок подзадач не обновился");
+        assertNoOverlaps(taskManager.getPrioritizedTasks());
+    }
+
+    // Снимок отвечает на вопросы о расписании так же, как индекс однопоточного менеджера, а поток внутри
+    // пакета видит свои изменения
+    @Test
+    void snapshotAnswersScheduleQueriesLikeTheIndex() {
+        InMemoryTaskManager reference = new InMemoryTaskManager(Managers.getDefaultHistory());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 2_000; i++) {
+            Task scheduled = new Task("Задача", "Описание", START.plusMinutes(random.nextInt(100_000)),
+                    Duration.ofMinutes(1 + random.nextInt(120)));
+            try {
+                reference.addNewTask(scheduled);
+                taskManager.addNewTask(new Task("Задача", "Описание", scheduled.getStartTime(), scheduled.getDuration()));
+            } catch (ManagerValidatePriorityException e) {
+                // время занято
+            }
+        }
+        for (int i = 0; i < 2_000; i++) {
+            LocalDateTime from = START.plusSeconds(random.nextInt(6_500_000) - 100_000);
+            Duration duration = Duration.ofSeconds(random.nextInt(20_000));
+            assertEquals(reference.findFreeWindow(from, duration), taskManager.findFreeWindow(from, duration),
+                    "Свободное окно не совпадает с индексом");
+            assertEquals(reference.isWindowFree(from, duration), taskManager.isWindowFree(from, duration),
+                    "Проверка окна не совпадает с индексом");
+        }
+
+        taskManager.inBatch(manager -> {
+            manager.deleteTasks();
+            manager.addNewTask(new Task("Задача", "Описание", START, Duration.ofHours(1)));
+            assertEquals(1, manager.getPrioritizedTasks().size(), "Пакет не видит своих изменений расписания");
+            assertEquals(START.plusHours(1), manager.findFreeWindow(START, Duration.ofMinutes(1)),
+                    "Пакет не видит своих изменений расписания");
+        });
+        assertEquals(1, taskManager.getPrioritizedTasks().size(), "Снимок не опубликован после пакета");
+    }
+
+    // Запись без чтений между ними не перестраивает снимок: 50 000 задач добавляются за O(n log n)
+    @Test
+    void bulkSchedulingDoesNotRebuildSnapshotPerWrite() {
+        for (int i = 0; i < 50_000; i++) {
+            taskManager.addNewTask(new Task("Задача " + i, "Описание", START.plusHours(2L * i), Duration.ofHours(1)));
+        }
+        assertEquals(50_000, taskManager.getPrioritizedTasks().size(), "Неверное количество задач");
+        assertFalse(taskManager.isWindowFree(START.plusHours(2L * 49_999).plusMinutes(30), Duration.ofMinutes(10)),
+                "Занятое окно считается свободным");
+        assertEquals(START.plusHours(1), taskManager.findFreeWindow(START, Duration.ofMinutes(1)),
+                "Неверное первое свободное окно");
+        taskManager.addNewTask(new Task("В промежутке", "Описание", START.plusHours(1), Duration.ofHours(1)));
+        assertEquals(START.plusHours(3), taskManager.findFreeWindow(START, Duration.ofMinutes(1)),
+                "Снимок не обновился после записи");
+    }
+
+    // Чтения из многих потоков только публикуют события; история после них полная и без повторов
+    @Test
+    void parallelReadsRecordEveryTaskInHistoryOnce() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            ids.add(taskManager.addNewTask(new Task("Задача", "Описание")));
+        }
+        runInParallel(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 5_000; i++) {
+                taskManager.getTask(ids.get(random.nextInt(ids.size())));
+            }
+            ids.forEach(taskManager::getTask);
+        });
+        List<Task> history = taskManager.getHistory();
+        Set<Integer> seen = new HashSet<>();
+        history.forEach(viewed -> assertTrue(seen.add(viewed.getId()), "Задача повторяется в истории"));
+        assertEquals(new HashSet<>(ids), seen, "История потеряла просмотренные задачи");
+    }
+
+    // Поток, выигравший tryLock, разбирает не больше пакета, даже если очередь за это время выросла
+    @Test
+    void drainAppliesAtMostOneBatchPerPublisher() throws Exception {
+        final int batchSize = 4;
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger applied = new AtomicInteger();
+        HistoryManager blocking = new InMemoryHistoryManager() {
+            @Override
+            public void add(Task task) {
+                if (applied.incrementAndGet() == 1) {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.add(task);
+            }
+        };
+        AsyncHistoryManager history = new AsyncHistoryManager(blocking, batchSize);
+        Thread drainer = new Thread(() -> {
+            for (int id = 1; id <= batchSize; id++) {
+                history.add(new Task(id, "Задача", "Описание", Status.NEW));
+            }
+        });
+        drainer.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS), "Разбор очереди не начался");
+        for (int id = batchSize + 1; id <= 100; id++) {
+            history.add(new Task(id, "Задача", "Описание", Status.NEW));
+        }
+        release.countDown();
+        drainer.join();
+        assertEquals(batchSize, applied.get(), "Один поток разобрал больше пакета");
+        assertEquals(100, history.getHistory().size(), "getHistory не разобрал остаток очереди");
+    }
+
+    // Просмотр, прочитанный до удаления и опубликованный после него, не возвращает задачу в историю
+    @Test
+    void lateViewAfterRemoveDoesNotResurrectTask() {
+        Map<Integer, Task> live = new HashMap<>();
+        AsyncHistoryManager history = new AsyncHistoryManager(Managers.getDefaultHistory());
+        history.bind(live::get);
+        Task stale = new Task(1, "Задача", "Описание", Status.NEW);
+        Task kept = new Task(2, "Задача", "Описание", Status.NEW);
+        live.put(2, kept);
+
+        history.remove(1);
+        history.add(stale);
+        history.add(kept);
+        assertEquals(List.of(kept), history.getHistory(), "Удалённая задача вернулась в историю");
+    }
+
+    private void runInParallel(Runnable action) throws Exception {
+        List<Runnable> actions = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            actions.add(action);
+        }
+        runInParallel(actions);
+    }
+
+    private void runInParallel(List<Runnable> actions) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(actions.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable action : actions) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                action.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    private static void assertNoOverlaps(List<Task> prioritized) {
+        for (int i = 1; i < prioritized.size(); i++) {
+            assertFalse(prioritized.get(i).getStartTime().isBefore(prioritized.get(i - 1).getEndTime()),
+                    "Задачи " + prioritized.get(i - 1).getId() + " и " + prioritized.get(i).getId() + " пересекаются");
+        }
+    }
+
+    private static Status expectedStatus(List<Subtask> epicSubtasks) {
+        if (epicSubtasks.isEmpty() || epicSubtasks.stream().allMatch(s -> s.getStatus() == Status.DONE)) {
+            return epicSubtasks.isEmpty() ? Status.NEW : Status.DONE;
+        }
+        return epicSubtasks.stream().anyMatch(s -> s.getStatus() == Status.IN_PROGRESS) ? Status.IN_PROGRESS
+                : Status.NEW;
+    }
+}
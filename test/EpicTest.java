@@ -1,6 +1,12 @@
-
+import com.google.gson.Gson;
+import httpserver.server.HttpTaskServer;
 import org.junit.jupiter.api.Test;
 import task.Epic;
+import task.Status;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -14,4 +20,45 @@ public class EpicTest {
         epic2.setId(10);
         assertEquals(epic1, epic2, "Эпики не равны");
     }
+
+    // Копия для записи снимка не меняется вместе с эпиком
+    @Test
+    public void copyKeepsFieldsAndIgnoresLaterChanges() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Epic epic = new Epic(7, "Эпик", "Описание", Status.IN_PROGRESS, start, Duration.ofHours(1),
+                start.plusHours(1));
+        Epic copy = epic.copy();
+        epic.setStatus(Status.DONE);
+        epic.setEndTime(start.plusHours(5));
+        epic.setName("Новое имя");
+
+        assertEquals(7, copy.getId(), "id не скопирован");
+        assertEquals("Эпик", copy.getName(), "Имя копии изменилось");
+        assertEquals("Описание", copy.getDescription(), "Описание не скопировано");
+        assertEquals(Status.IN_PROGRESS, copy.getStatus(), "Статус копии изменился");
+        assertEquals(start, copy.getStartTime(), "Начало не скопировано");
+        assertEquals(Duration.ofHours(1), copy.getDuration(), "Длительность не скопирована");
+        assertEquals(start.plusHours(1), copy.getEndTime(), "Окончание копии изменилось");
+    }
+
+    @Test
+    public void subtaskIdsKeepInsertionOrderAfterRemovals() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Epic epic = new Epic("Эпик", "Описание", Status.NEW, start, Duration.ofHours(1), start.plusHours(1));
+        for (int id = 1; id <= 100; id++) {
+            epic.addSubtaskId(id);
+        }
+        for (int id = 1; id <= 100; id++) {
+            if (id % 10 != 0) {
+                epic.removeSubtaskId(id);
+            }
+        }
+        epic.addSubtaskId(5);
+        assertEquals(List.of(10, 20, 30, 40, 50, 60, 70, 80, 90, 100, 5), epic.getSubtaskIds(),
+                "Порядок id подзадач нарушен");
+
+        Gson gson = HttpTaskServer.getGson();
+        Epic restored = gson.fromJson(gson.toJson(epic), Epic.class);
+        assertEquals(epic.getSubtaskIds(), restored.getSubtaskIds(), "id подзадач не пережили JSON");
+    }
 }
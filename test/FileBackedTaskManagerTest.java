@@ -1,6 +1,10 @@
 import exception.ManagerLoadException;
 import exception.ManagerSaveException;
+import manager.CompactionPolicy;
+import manager.Durability;
 import manager.FileBackedTaskManager;
+import manager.SnapshotFormat;
+import manager.StorageOptions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,14 +15,24 @@ import task.Task;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static manager.FileBackedTaskManager.loadFromFile;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class FileBackedTaskManagerTest extends AbstractTaskManagerTest<FileBackedTaskManager> {
     private File file;
@@ -38,6 +52,8 @@ public class FileBackedTaskManagerTest extends AbstractTaskManagerTest<FileBacke
     @Override
     public void finish() {
         file.deleteOnExit();
+        FileBackedTaskManager.previousSnapshotFile(file).deleteOnExit();
+        FileBackedTaskManager.idMarkFile(file).deleteOnExit();
     }
 
 
@@ -95,6 +111,444 @@ public class FileBackedTaskManagerTest extends AbstractTaskManagerTest<FileBacke
     }
 
 
+    @Test
+    void journaledManagerAppendsRecordsInsteadOfRewritingSnapshot() throws IOException {
+        String snapshot = Files.readString(file.toPath());
+        try (FileBackedTaskManager journaled = new FileBackedTaskManager(file, true)) {
+            journaled.addNewTask(task);
+            journaled.addNewEpic(epic);
+        }
+        assertEquals(snapshot, Files.readString(file.toPath()), "Снимок не должен перезаписываться");
+        List<String> records = Files.readAllLines(FileBackedTaskManager.journalFile(file).toPath());
+        assertEquals(2, records.size(), "Каждая мутация должна дописывать одну запись");
+        FileBackedTaskManager.journalFile(file).deleteOnExit();
+    }
+
+    @Test
+    void loadFromFileReplaysJournalOverSnapshot() {
+        final int taskId;
+        final int epicId;
+        final int subtaskId;
+        try (FileBackedTaskManager journaled = new FileBackedTaskManager(file, true)) {
+            taskId = journaled.addNewTask(task);
+            epicId = journaled.addNewEpic(epic);
+            Subtask subtask = new Subtask("Подзадача - 1", "Описание подзадачи - 1", Status.DONE, epicId);
+            subtaskId = journaled.addNewSubtask(subtask);
+            Subtask removed = new Subtask("Подзадача - 2", "Описание подзадачи - 2", Status.NEW, epicId);
+            journaled.deleteSubtask(journaled.addNewSubtask(removed));
+            task.setStatus(Status.IN_PROGRESS);
+            journaled.updateTask(task);
+        }
+
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            assertEquals(Status.IN_PROGRESS, restored.getTask(taskId).getStatus(), "Обновление не восстановлено");
+            assertEquals(List.of(subtaskId), restored.getEpic(epicId).getSubtaskIds(), "Подзадачи эпика не совпадают");
+            assertEquals(Status.DONE, restored.getEpic(epicId).getStatus(), "Статус эпика не восстановлен");
+            assertEquals(1, restored.getAllSubtasks().size(), "Удаление подзадачи не восстановлено");
+            assertTrue(restored.addNewTask(new Task("Задача - 2", "Описание")) > subtaskId,
+                    "Новый ID не должен пересекаться с восстановленными");
+        }
+        FileBackedTaskManager.journalFile(file).deleteOnExit();
+    }
+
+    // Граница id пишется раз на блок: после перезапуска id удалённой задачи и остаток блока не выдаются
+    @Test
+    void restartNeverReusesIdsOfReservedBlock() {
+        StorageOptions options = new StorageOptions().setIdBlockSize(4);
+        try (FileBackedTaskManager first = new FileBackedTaskManager(file, options)) {
+            first.addNewTask(new Task("Задача - 1", "Описание"));
+            first.deleteTask(first.addNewTask(new Task("Задача - 2", "Описание")));
+            assertEquals("5", Files.readString(FileBackedTaskManager.idMarkFile(file).toPath()),
+                    "Граница должна покрывать весь выданный блок");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        try (FileBackedTaskManager restored = loadFromFile(file, options)) {
+            assertEquals(5, restored.addNewTask(new Task("Задача - 3", "Описание")),
+                    "После перезапуска выдан id из уже зарезервированного блока");
+            for (int id = 6; id <= 9; id++) {
+                assertEquals(id, restored.addNewTask(new Task("Задача - " + id, "Описание")),
+                        "Внутри блоков id должны идти подряд");
+            }
+        }
+    }
+
+    // Оборванная при сбое запись отрезается при открытии, и новые записи не склеиваются с ней
+    @Test
+    void appendAfterTornTailSurvivesReload() throws IOException {
+        try (FileBackedTaskManager journaled = new FileBackedTaskManager(file, true)) {
+            journaled.addNewTask(task);
+        }
+        File log = FileBackedTaskManager.journalFile(file);
+        Files.writeString(log.toPath(), "PUT,9,TASK,x", StandardOpenOption.APPEND);
+
+        final int secondId;
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            assertEquals(1, restored.getAllTasks().size(), "Оборванная запись применилась");
+            secondId = restored.addNewTask(new Task("Задача - 2", "Описание"));
+        }
+        final int thirdId;
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            assertEquals("Задача - 2", restored.getTask(secondId).getName(), "Запись после обрыва потеряна");
+            thirdId = restored.addNewTask(new Task("Задача - 3", "Описание"));
+        }
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            assertEquals(3, restored.getAllTasks().size(), "Журнал повреждён после дозаписи");
+            assertEquals("Задача - 3", restored.getTask(thirdId).getName(), "Запись после обрыва потеряна");
+        }
+        log.deleteOnExit();
+    }
+
+    @Test
+    void compactWritesSnapshotAndTruncatesJournal() {
+        final int taskId;
+        try (FileBackedTaskManager journaled = new FileBackedTaskManager(file, true)) {
+            taskId = journaled.addNewTask(task);
+            journaled.addNewEpic(epic);
+            journaled.compact();
+            assertFalse(FileBackedTaskManager.journalFile(file).exists(), "Журнал должен быть свёрнут");
+            assertFalse(FileBackedTaskManager.rotatedJournalFile(file).exists(), "Срез журнала должен быть удалён");
+            journaled.deleteEpic(epic.getId());
+        }
+
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            assertEquals(task.getName(), restored.getTask(taskId).getName(), "Задача не попала в снимок");
+            assertTrue(restored.getAllEpics().isEmpty(), "Запись после сжатия не применилась");
+        }
+        FileBackedTaskManager.journalFile(file).deleteOnExit();
+    }
+
+    // Откат на предыдущий снимок после сжатия накатывает свёрнутый журнал и не теряет его записи
+    @Test
+    void journaledFallbackAfterCompactionKeepsCompactedRecords() throws IOException {
+        final int secondId;
+        final int thirdId;
+        try (FileBackedTaskManager journaled = new FileBackedTaskManager(file, true)) {
+            journaled.addNewTask(task);
+            journaled.compact();
+            secondId = journaled.addNewTask(new Task("Задача - 2", "Описание"));
+            journaled.compact();
+            thirdId = journaled.addNewTask(new Task("Задача - 3", "Описание"));
+        }
+        assertTrue(FileBackedTaskManager.retainedJournalFile(file).exists(), "Свёрнутый журнал удалён");
+        corruptSnapshot("Задача - 2");
+
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            assertTrue(restored.getLoadReport().isRecoveredFromPrevious(), "Повреждение снимка не обнаружено");
+            assertEquals("Задача - 2", restored.getTask(secondId).getName(), "Потеряна запись свёрнутого журнала");
+            assertEquals("Задача - 3", restored.getTask(thirdId).getName(), "Потеряна запись текущего журнала");
+        }
+        try (FileBackedTaskManager reloaded = loadFromFile(file, true)) {
+            assertEquals(3, reloaded.getAllTasks().size(), "Восстановленное состояние не сохранено");
+        }
+        FileBackedTaskManager.journalFile(file).deleteOnExit();
+        FileBackedTaskManager.retainedJournalFile(file).deleteOnExit();
+        new File(file.getPath() + ".corrupt").deleteOnExit();
+    }
+
+    // Без свёрнутого журнала откат в режиме журнала молча потерял бы записи, поэтому загрузка падает
+    @Test
+    void journaledFallbackWithoutCompactedRecordsFailsLoudly() throws IOException {
+        try (FileBackedTaskManager journaled = new FileBackedTaskManager(file, true)) {
+            journaled.addNewTask(task);
+            journaled.compact();
+            journaled.addNewTask(new Task("Задача - 2", "Описание"));
+            journaled.compact();
+        }
+        Files.delete(FileBackedTaskManager.retainedJournalFile(file).toPath());
+        corruptSnapshot("Задача - 2");
+
+        assertThrows(ManagerLoadException.class, () -> loadFromFile(file, true),
+                "Откат без свёрнутого журнала не должен проходить молча");
+    }
+
+    private void corruptSnapshot(String marker) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        String content = new String(bytes, StandardCharsets.UTF_8);
+        int position = content.substring(0, content.indexOf(marker)).getBytes(StandardCharsets.UTF_8).length;
+        bytes[position] = 'X';
+        Files.write(file.toPath(), bytes);
+    }
+
+    // Прерванное сжатие, которое не удалось завершить при открытии, не мешает загрузке:
+    // отложенные записи считаются порогом, и фоновое сжатие сворачивает их без новых мутаций
+    @Test
+    void leftoverRotatedJournalCountsTowardCompaction() throws IOException, InterruptedException {
+        try (FileBackedTaskManager journaled = new FileBackedTaskManager(file, true)) {
+            journaled.addNewTask(task);
+            journaled.addNewEpic(epic);
+            journaled.addNewTask(new Task("Задача - 2", "Описание"));
+        }
+        File rotated = FileBackedTaskManager.rotatedJournalFile(file);
+        Files.move(FileBackedTaskManager.journalFile(file).toPath(), rotated.toPath());
+        // Временный файл снимка занят каталогом: запись снимка при открытии не проходит
+        File blocker = new File(file.getPath() + ".tmp");
+        assertTrue(blocker.mkdir(), "Не удалось подготовить сбой записи");
+
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            assertEquals(2, restored.getAllTasks().size(), "Записи отложенного журнала не применились");
+            assertTrue(rotated.exists(), "Отложенный журнал удалён без снимка");
+            Files.delete(blocker.toPath());
+            restored.startCompaction(new CompactionPolicy(Long.MAX_VALUE, 3, null, Duration.ofMillis(10)));
+            for (int i = 0; i < 200 && rotated.exists(); i++) {
+                Thread.sleep(10);
+            }
+            assertFalse(rotated.exists(), "Отложенные записи не учтены порогом сжатия");
+        }
+        try (FileBackedTaskManager reloaded = loadFromFile(file, true)) {
+            assertEquals(2, reloaded.getAllTasks().size(), "Неверное количество задач");
+            assertEquals(1, reloaded.getAllEpics().size(), "Неверное количество эпиков");
+        }
+        FileBackedTaskManager.retainedJournalFile(file).deleteOnExit();
+    }
+
+    // Отсутствующий текст и строка "null" различаются после загрузки в обоих форматах и в журнале
+    @Test
+    void nullTextsRoundTripInEveryFormat() {
+        for (StorageOptions options : List.of(new StorageOptions(),
+                new StorageOptions().setSnapshotFormat(SnapshotFormat.BINARY),
+                new StorageOptions().setJournaled(true))) {
+            final int taskId;
+            final int subtaskId;
+            try (FileBackedTaskManager manager = new FileBackedTaskManager(file, options)) {
+                taskId = manager.addNewTask(new Task("null", null));
+                final int epicId = manager.addNewEpic(new Epic("Эпик", "Описание"));
+                subtaskId = manager.addNewSubtask(new Subtask(null, "null", epicId));
+            }
+            try (FileBackedTaskManager restored = loadFromFile(file, options)) {
+                assertEquals("null", restored.getTask(taskId).getName(), "Строка \"null\" потеряна");
+                assertNull(restored.getTask(taskId).getDescription(), "Отсутствующее описание стало строкой");
+                assertNull(restored.getSubtask(subtaskId).getName(), "Отсутствующее имя подзадачи стало строкой");
+                assertEquals("null", restored.getSubtask(subtaskId).getDescription(), "Описание подзадачи неверно");
+                restored.deleteTasks();
+                restored.deleteEpics();
+            }
+        }
+        FileBackedTaskManager.journalFile(file).deleteOnExit();
+    }
+
+    @Test
+    void backgroundCompactionTriggersByRecordCount() throws InterruptedException {
+        try (FileBackedTaskManager journaled = new FileBackedTaskManager(file, true)) {
+            journaled.startCompaction(new CompactionPolicy(Long.MAX_VALUE, 2, null, Duration.ofMillis(10)));
+            journaled.addNewTask(task);
+            journaled.addNewEpic(epic);
+            File log = FileBackedTaskManager.journalFile(file);
+            for (int i = 0; i < 200 && log.exists(); i++) {
+                Thread.sleep(10);
+            }
+            assertFalse(log.exists(), "Фоновое сжатие не сработало");
+        }
+        FileBackedTaskManager restored = loadFromFile(file);
+        assertEquals(1, restored.getAllTasks().size(), "Снимок после сжатия неполный");
+        assertEquals(1, restored.getAllEpics().size(), "Снимок после сжатия неполный");
+    }
+
+    @Test
+    void inBatchAppendsJournalOnceAtCommit() throws IOException {
+        try (FileBackedTaskManager journaled = new FileBackedTaskManager(file, true)) {
+            final int epicId = journaled.addNewEpic(epic);
+            File log = FileBackedTaskManager.journalFile(file);
+            long sizeBeforeBatch = log.length();
+            journaled.inBatch(manager -> {
+                for (int i = 0; i < 3; i++) {
+                    manager.addNewSubtask(new Subtask("Подзадача - " + i, "Описание", Status.DONE, epicId));
+                }
+                assertEquals(sizeBeforeBatch, log.length(), "Внутри пакета журнал не должен меняться");
+            });
+            // одна запись эпика, три подзадачи и один итоговый пересчёт эпика
+            assertEquals(5, Files.readAllLines(log.toPath()).size(), "Неверное количество записей журнала");
+        }
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            assertEquals(Status.DONE, restored.getEpic(epic.getId()).getStatus(), "Статус эпика не восстановлен");
+            assertEquals(3, restored.getEpicSubtasks(epic.getId()).size(), "Подзадачи не восстановлены");
+        }
+        FileBackedTaskManager.journalFile(file).deleteOnExit();
+    }
+
+    @Test
+    void writeBehindPersistsOnFlush() throws Exception {
+        StorageOptions options = new StorageOptions()
+                .setDurability(Durability.OS_BUFFERED)
+                .setFlushInterval(Duration.ofSeconds(10));
+        try (FileBackedTaskManager writeBehind = new FileBackedTaskManager(file, options)) {
+            writeBehind.addNewTask(task);
+            assertTrue(loadFromFile(file).getAllTasks().isEmpty(), "Запись должна быть отложена");
+            writeBehind.flush().get(5, TimeUnit.SECONDS);
+            assertEquals(1, loadFromFile(file).getAllTasks().size(), "flush не записал изменения");
+        }
+    }
+
+    @Test
+    void groupCommitJournalPersistsInBackground() throws Exception {
+        StorageOptions options = new StorageOptions()
+                .setJournaled(true)
+                .setDurability(Durability.GROUP_COMMIT)
+                .setFlushInterval(Duration.ofMillis(10));
+        final int epicId;
+        try (FileBackedTaskManager groupCommit = new FileBackedTaskManager(file, options)) {
+            epicId = groupCommit.addNewEpic(epic);
+            groupCommit.addNewSubtask(new Subtask("Подзадача - 1", "Описание", Status.DONE, epicId));
+            groupCommit.flush().get(5, TimeUnit.SECONDS);
+        }
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            assertEquals(Status.DONE, restored.getEpic(epicId).getStatus(), "Изменения не записаны");
+        }
+        FileBackedTaskManager.journalFile(file).deleteOnExit();
+    }
+
+    @Test
+    void binarySnapshotRoundTrip() {
+        StorageOptions options = new StorageOptions().setSnapshotFormat(SnapshotFormat.BINARY);
+        FileBackedTaskManager binary = new FileBackedTaskManager(file, options);
+        Task named = new Task("Задача, с запятой", "Описание, тоже с запятой", Status.IN_PROGRESS,
+                LocalDateTime.of(2024, 10, 1, 10, 0), Duration.ofMinutes(90));
+        final int taskId = binary.addNewTask(named);
+        final int epicId = binary.addNewEpic(epic);
+        final int subtaskId = binary.addNewSubtask(new Subtask("Подзадача - 1", "Описание подзадачи", Status.DONE,
+                LocalDateTime.of(2024, 10, 2, 10, 0), Duration.ofMinutes(30), epicId));
+
+        FileBackedTaskManager restored = loadFromFile(file);
+        Task taskLoad = restored.getTask(taskId);
+        assertEquals(named.getName(), taskLoad.getName(), "Названия задач не совпадают");
+        assertEquals(named.getDescription(), taskLoad.getDescription(), "Описания задач не совпадают");
+        assertEquals(named.getStatus(), taskLoad.getStatus(), "Статусы задач не совпадают");
+        assertEquals(named.getStartTime(), taskLoad.getStartTime(), "StartTime задач не совпадают");
+        assertEquals(named.getDuration(), taskLoad.getDuration(), "Duration задач не совпадают");
+        Epic epicLoad = restored.getEpic(epicId);
+        assertEquals(List.of(subtaskId), epicLoad.getSubtaskIds(), "ID подзадач у эпиков не совпадают");
+        assertEquals(epic.getEndTime(), epicLoad.getEndTime(), "EndTime эпиков не совпадают");
+        Subtask subtaskLoad = restored.getSubtask(subtaskId);
+        assertEquals("Подзадача - 1", subtaskLoad.getName(), "Названия подзадач не совпадают");
+        assertEquals("Описание подзадачи", subtaskLoad.getDescription(), "Описания подзадач не совпадают");
+        assertEquals(epicId, subtaskLoad.getParentId(), "ID эпиков у подзадач не совпадают");
+    }
+
+    @Test
+    void csvQuotesNamesWithSeparatorsInSnapshotAndJournal() {
+        Task quoted = new Task("Задача, \"в кавычках\"", "Описание\nв две строки", Status.DONE,
+                LocalDateTime.of(2024, 10, 1, 10, 0, 15), Duration.ofMinutes(45));
+        taskManager.addNewTask(quoted);
+        try (FileBackedTaskManager journaled = loadFromFile(file, true)) {
+            journaled.addNewTask(new Task("Запись, журнала", "\"", Status.NEW));
+        }
+
+        try (FileBackedTaskManager restored = loadFromFile(file, true)) {
+            List<Task> tasks = restored.getAllTasks();
+            assertEquals(2, tasks.size(), "Неверное количество задач");
+            Task snapshotTask = tasks.getFirst();
+            assertEquals(quoted.getName(), snapshotTask.getName(), "Названия задач не совпадают");
+            assertEquals(quoted.getDescription(), snapshotTask.getDescription(), "Описания задач не совпадают");
+            assertEquals(quoted.getStartTime(), snapshotTask.getStartTime(), "StartTime задач не совпадают");
+            assertEquals("Запись, журнала", tasks.get(1).getName(), "Названия задач из журнала не совпадают");
+            assertEquals("\"", tasks.get(1).getDescription(), "Описания задач из журнала не совпадают");
+        }
+        FileBackedTaskManager.journalFile(file).deleteOnExit();
+    }
+
+    @Test
+    void loadFromFileFallsBackToPreviousSnapshotOnChecksumMismatch() throws IOException {
+        taskManager.addNewTask(task);
+        taskManager.addNewTask(new Task("Просто задача - 2", "Описание простой задачи - 2", Status.NEW));
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        String content = new String(bytes, StandardCharsets.UTF_8);
+        int position = content.substring(0, content.indexOf("задача - 2")).getBytes(StandardCharsets.UTF_8).length;
+        bytes[position] = 'X';
+        Files.write(file.toPath(), bytes);
+
+        FileBackedTaskManager restored = loadFromFile(file);
+        assertTrue(restored.getLoadReport().isRecoveredFromPrevious(), "Повреждение снимка не обнаружено");
+        assertEquals(1, restored.getAllTasks().size(), "Не загружено предыдущее поколение снимка");
+        assertEquals(task.getName(), restored.getAllTasks().getFirst().getName(), "Названия задач не совпадают");
+        new File(file.getPath() + ".corrupt").deleteOnExit();
+    }
+
+    @Test
+    void segmentedStorageRewritesOnlyTouchedSegment() throws IOException {
+        StorageOptions options = new StorageOptions().setSegmentSize(2);
+        FileBackedTaskManager segmented = new FileBackedTaskManager(file, options);
+        final int taskId = segmented.addNewTask(task);
+        final int epicId = segmented.addNewEpic(epic);
+        final int subtaskId = segmented.addNewSubtask(new Subtask("Подзадача - 1", "Описание подзадачи",
+                Status.NEW, epicId));
+        final int secondTaskId = segmented.addNewTask(new Task("Просто задача - 2", "Описание", Status.NEW));
+        File directory = FileBackedTaskManager.segmentDirectory(file);
+        File firstTasks = new File(directory, "TASK-0-1.seg");
+        assertTrue(firstTasks.exists(), "Сегмент задач не записан");
+        byte[] untouched = Files.readAllBytes(firstTasks.toPath());
+        Object fileKey = Files.readAttributes(firstTasks.toPath(), BasicFileAttributes.class).fileKey();
+
+        Task second = segmented.getTask(secondTaskId);
+        second.setStatus(Status.DONE);
+        segmented.updateTask(second);
+        assertEquals(fileKey, Files.readAttributes(firstTasks.toPath(), BasicFileAttributes.class).fileKey(),
+                "Переписан сегмент, который мутация не затрагивала");
+        assertArrayEquals(untouched, Files.readAllBytes(firstTasks.toPath()), "Сегмент задач изменился");
+
+        segmented.deleteEpic(epicId);
+        FileBackedTaskManager restored = loadFromFile(file, options);
+        assertEquals(2, restored.getAllTasks().size(), "Неверное количество задач");
+        assertEquals(Status.DONE, restored.getTask(secondTaskId).getStatus(), "Статусы задач не совпадают");
+        assertEquals(task.getName(), restored.getTask(taskId).getName(), "Названия задач не совпадают");
+        assertTrue(restored.getAllEpics().isEmpty(), "Удалённый эпик загружен из сегмента");
+        assertTrue(restored.getAllSubtasks().isEmpty(), "Подзадача удалённого эпика загружена из сегмента");
+        assertFalse(new File(directory, "SUBTASK-" + subtaskId / 2 * 2 + "-" + (subtaskId / 2 * 2 + 1) + ".seg")
+                .exists(), "Пустой сегмент не удалён");
+
+        FileBackedTaskManager monolithic = loadFromFile(file);
+        assertEquals(2, monolithic.getAllTasks().size(), "Сегменты не перенесены в общий снимок");
+        assertEquals(0, directory.list((dir, name) -> name.endsWith(".seg")).length,
+                "Сегменты не удалены после переноса");
+        directory.deleteOnExit();
+    }
+
+    @Test
+    void lazyLoadReadsTextsOnDemandThroughBoundedCache() {
+        StorageOptions options = new StorageOptions().setSnapshotFormat(SnapshotFormat.BINARY);
+        FileBackedTaskManager binary = new FileBackedTaskManager(file, options);
+        final int taskId = binary.addNewTask(task);
+        final int epicId = binary.addNewEpic(epic);
+        final int subtaskId = binary.addNewSubtask(new Subtask("Подзадача - 1", "Описание подзадачи", Status.NEW,
+                epicId));
+
+        FileBackedTaskManager lazy = loadFromFile(file, options.setLazyTextCacheSize(1));
+        assertEquals("Подзадача - 1", lazy.getSubtask(subtaskId).getName(), "Названия подзадач не совпадают");
+        assertEquals(task.getName(), lazy.getTask(taskId).getName(), "Названия задач не совпадают");
+        assertEquals(epic.getDescription(), lazy.getEpic(epicId).getDescription(), "Описания эпиков не совпадают");
+        assertEquals("Описание подзадачи", lazy.getSubtask(subtaskId).getDescription(),
+                "Описания подзадач не совпадают");
+
+        Task updated = lazy.getTask(taskId);
+        updated.setStatus(Status.DONE);
+        lazy.updateTask(updated);
+        FileBackedTaskManager restored = loadFromFile(file);
+        assertEquals(task.getName(), restored.getTask(taskId).getName(), "Названия задач не совпадают");
+        assertEquals(Status.DONE, restored.getTask(taskId).getStatus(), "Статусы задач не совпадают");
+        assertEquals(epic.getName(), restored.getEpic(epicId).getName(), "Названия эпиков не совпадают");
+    }
+
+    @Test
+    void loadFromFileParsesLargeSnapshotInChunks() {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            FileBackedTaskManager large = new FileBackedTaskManager(file,
+                    new StorageOptions().setSnapshotFormat(format));
+            large.inBatch(manager -> {
+                int epicId = manager.addNewEpic(new Epic("Эпик", "Описание эпика"));
+                for (int i = 0; i < 10_000; i++) {
+                    manager.addNewTask(new Task("Задача " + i, "Описание задачи " + i));
+                    manager.addNewSubtask(new Subtask("Подзадача " + i, "Описание подзадачи", Status.NEW, epicId));
+                }
+            });
+
+            FileBackedTaskManager restored = loadFromFile(file);
+            assertEquals(10_000, restored.getAllTasks().size(), "Количество задач не верное");
+            assertEquals(10_000, restored.getEpicSubtasks(1).size(), "Подзадачи не связаны с эпиком");
+            assertEquals(20_001, restored.getLoadReport().getRecords(), "Неверное число записей в отчёте");
+            assertTrue(restored.getLoadReport().getChunks() > 1, "Снимок должен разбираться кусками");
+        }
+    }
+
     @Test
     public void saveFileTest() {
         Path path2 = Paths.get("file_test.csv");
@@ -0,0 +1,87 @@
+import manager.FrequencyHistoryManager;
+import manager.FrequencySketch;
+import manager.InMemoryTaskManager;
+import manager.Managers;
+import manager.TaskManager;
+import org.junit.jupiter.api.Test;
+import task.Task;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void hottestIdsComeFirstAndEstimatesNeverUndercount() {
+        FrequencySketch sketch = new FrequencySketch(1_000, 2);
+        for (int i = 0; i < 200; i++) {
+            sketch.record(7);
+            if (i % 2 == 0) {
+                sketch.record(3);
+            }
+            sketch.record(1_000 + i);
+        }
+        assertEquals(List.of(7, 3), sketch.hottest(), "Неверный список самых частых id");
+        assertTrue(sketch.frequency(7) >= 200, "Оценка меньше настоящего числа обращений");
+        assertTrue(sketch.frequency(3) >= 100, "Оценка меньше настоящего числа обращений");
+    }
+
+    // После затухания старая популярность уступает новой
+    @Test
+    public void decayLetsNewHotIdsOvertakeOldOnes() {
+        FrequencySketch sketch = new FrequencySketch(16, 1);
+        for (int i = 0; i < 150; i++) {
+            sketch.record(1);
+        }
+        for (int i = 0; i < 150; i++) {
+            sketch.record(2);
+        }
+        assertEquals(List.of(2), sketch.hottest(), "Старая популярность не затухла");
+        assertTrue(sketch.frequency(1) < 150, "Счётчики не были уменьшены");
+    }
+
+    // Просмотры через менеджер попадают и в историю, и в счётчик частоты
+    @Test
+    public void frequencyHistoryCountsManagerReads() {
+        FrequencyHistoryManager history = Managers.getFrequencyHistory(new FrequencySketch(64, 1));
+        TaskManager manager = new InMemoryTaskManager(history);
+        final int rareId = manager.addNewTask(new Task("Редкая задача", "Описание"));
+        final int hotId = manager.addNewTask(new Task("Частая задача", "Описание"));
+        manager.getTask(rareId);
+        for (int i = 0; i < 5; i++) {
+            manager.getTask(hotId);
+        }
+        assertEquals(List.of(hotId), history.getSketch().hottest(), "Неверная самая частая задача");
+        assertTrue(history.getSketch().frequency(hotId) >= 5, "Оценка меньше настоящего числа обращений");
+        assertEquals(List.of(rareId, hotId), manager.getHistory().stream().map(Task::getId).toList(),
+                "История просмотров не ведётся");
+
+        history.remove(hotId);
+        assertEquals(List.of(rareId), manager.getHistory().stream().map(Task::getId).toList(),
+                "Удаление не дошло до истории");
+    }
+
+    // Запись без общей блокировки: параллельные потоки не теряют горячий id
+    @Test
+    public void concurrentRecordsKeepHotIdOnTop() throws InterruptedException {
+        FrequencySketch sketch = new FrequencySketch(100_000, 1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int base = 1_000 + t * 10_000;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    sketch.record(7);
+                    sketch.record(base + i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(7), sketch.hottest(), "Горячий id потерян");
+        assertTrue(sketch.frequency(7) > 5_000, "Параллельные записи почти не учтены");
+    }
+}
@@ -1,6 +1,8 @@
 package HttpServer;
 
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import httpserver.server.HistorySessions;
 import httpserver.server.HttpTaskServer;
 import manager.InMemoryTaskManager;
 import manager.Managers;
@@ -21,6 +23,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HistoryHandlerTest {
     TaskManager manager = new InMemoryTaskManager(Managers.getDefaultHistory());
@@ -96,6 +99,40 @@ public class HistoryHandlerTest {
         checkTaskEquality(task2, tasksFromManager.get(1));
     }
 
+    // Клиенты с разными сессиями видят только свои просмотры, общая история их не получает
+    @Test
+    public void testSessionHistories() throws IOException, InterruptedException {
+        int firstId = manager.addNewTask(new Task("Task1", "Testing task1",
+                LocalDateTime.of(2024, 10, 1, 1, 0), Duration.ofMinutes(5)));
+        int secondId = manager.addNewTask(new Task("Task2", "Testing task2",
+                LocalDateTime.of(2024, 10, 1, 5, 1), Duration.ofMinutes(6)));
+
+        view("alice", firstId);
+        view("bob", secondId);
+        view("bob", firstId);
+
+        assertEquals(List.of(firstId), sessionHistory("alice"), "Чужой просмотр попал в историю сессии");
+        assertEquals(List.of(secondId, firstId), sessionHistory("bob"), "Неверный порядок истории сессии");
+        assertTrue(manager.getHistory().isEmpty(), "Просмотры сессий попали в общую историю");
+    }
+
+    private void view(String session, int id) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/tasks?id=" + id))
+                .header(HistorySessions.HEADER, session).GET().build();
+        assertEquals(200, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private List<Integer> sessionHistory(String session) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/history"))
+                .header(HistorySessions.HEADER, session).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        List<Task> history = gson.fromJson(response.body(), new TypeToken<List<Task>>() {
+        }.getType());
+        return history.stream().map(Task::getId).toList();
+    }
+
     private void checkTaskEquality(Task expected, Task actual) {
         assertEquals(expected.getId(), actual.getId(), "ID задач не совпадают");
         assertEquals(expected.getType(), actual.getType(), "Типы задач не совпадают");
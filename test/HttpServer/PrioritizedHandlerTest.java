@@ -1,6 +1,8 @@
 package HttpServer;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import httpserver.server.HttpTaskServer;
 import manager.InMemoryTaskManager;
 import manager.Managers;
@@ -12,9 +14,11 @@ import task.Task;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -95,4 +99,60 @@ public class PrioritizedHandlerTest {
             previousStartTime = task.getStartTime();
         }
     }
+
+    @Test
+    public void testFreeWindow() throws IOException, InterruptedException {
+        LocalDateTime startTime = LocalDateTime.of(2024, 10, 1, 5, 0);
+        manager.addNewTask(new Task("Task1", "Testing task1", startTime, Duration.ofMinutes(30)));
+        manager.addNewTask(new Task("Task2", "Testing task2", startTime.plusMinutes(40), Duration.ofMinutes(30)));
+
+        URI url = URI.create("http://localhost:8080/prioritized/free?from=2024-10-01T05:00&duration=PT20M");
+        HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        JsonObject window = JsonParser.parseString(response.body()).getAsJsonObject();
+        assertEquals("2024-10-01T06:10:00", window.get("start").getAsString(), "Неверное начало окна");
+        assertEquals("2024-10-01T06:30:00", window.get("end").getAsString(), "Неверное окончание окна");
+
+        url = URI.create("http://localhost:8080/prioritized/free?from=2024-10-01T05:00");
+        request = HttpRequest.newBuilder().uri(url).GET().build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    public void testPrioritizedPage() throws IOException, InterruptedException {
+        LocalDateTime startTime = LocalDateTime.of(2024, 10, 1, 0, 0);
+        for (int i = 0; i < 5; i++) {
+            manager.addNewTask(new Task("Task" + i, "Testing task" + i, startTime.plusDays(i), Duration.ofHours(1)));
+        }
+        URI url = URI.create("http://localhost:8080/prioritized?from=2024-10-02T00:00&to=2024-10-05T00:00&limit=2");
+        HttpRequest request = HttpRequest.newBuilder().uri(url).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        Task[] page = gson.fromJson(response.body(), Task[].class);
+        assertEquals(2, page.length, "Неверный размер страницы");
+        assertEquals(startTime.plusDays(1), page[0].getStartTime(), "Неверное начало страницы");
+
+        url = URI.create("http://localhost:8080/prioritized?from=2024-10-02T00:00&to=2024-10-05T00:00&after="
+                + page[1].getId());
+        request = HttpRequest.newBuilder().uri(url).GET().build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        page = gson.fromJson(response.body(), Task[].class);
+        assertEquals(1, page.length, "Вторая страница должна содержать оставшуюся задачу");
+        assertEquals(startTime.plusDays(3), page[0].getStartTime(), "Неверная задача на второй странице");
+
+        // значения раскодируются после разбора: закодированные & и = внутри значения не создают новых параметров
+        url = URI.create("http://localhost:8080/prioritized?from="
+                + URLEncoder.encode("2024-10-02T00:00", StandardCharsets.UTF_8) + "&to="
+                + URLEncoder.encode("2024-10-05T00:00", StandardCharsets.UTF_8) + "&note="
+                + URLEncoder.encode("a&limit=1", StandardCharsets.UTF_8));
+        request = HttpRequest.newBuilder().uri(url).GET().build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), "Закодированные параметры не разобраны");
+        page = gson.fromJson(response.body(), Task[].class);
+        assertEquals(3, page.length, "Закодированное значение разобрано как отдельный параметр");
+    }
 }
@@ -1,7 +1,10 @@
 package HttpServer;
 
 import com.google.gson.Gson;
+import httpserver.server.HistorySessions;
 import httpserver.server.HttpTaskServer;
+import httpserver.server.ResponseCache;
+import manager.FrequencySketch;
 import manager.InMemoryTaskManager;
 import manager.Managers;
 import manager.TaskManager;
@@ -21,11 +24,17 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TaskHandlerTest {
-    TaskManager manager = new InMemoryTaskManager(Managers.getDefaultHistory());
-    HttpTaskServer taskServer = new HttpTaskServer(manager);
+    // Один sketch на историю менеджера, истории сессий и кеш ответов
+    FrequencySketch sketch = new FrequencySketch(64, 4);
+    TaskManager manager = new InMemoryTaskManager(Managers.getFrequencyHistory(sketch));
+    // Кеш на одну запись: выбор вытесняемой не зависит от случайной выборки
+    ResponseCache responseCache = new ResponseCache(sketch, 1);
+    HttpTaskServer taskServer = new HttpTaskServer(manager, new HistorySessions(manager, sketch), responseCache);
     Gson gson = HttpTaskServer.getGson();
     HttpClient client;
 
@@ -335,6 +344,69 @@ public class TaskHandlerTest {
         checkTaskEquality(task2, tasksFromManager.getFirst());
     }
 
+    @Test
+    public void testResponseCacheAdmitsHotTasksAndDropsChangedOnes() throws IOException, InterruptedException {
+        LocalDateTime startTime = LocalDateTime.of(2024, 10, 1, 1, 0);
+        final int hotId = manager.addNewTask(new Task("Hot", "Testing task", startTime, Duration.ofMinutes(5)));
+        final int coldId = manager.addNewTask(new Task("Cold", "Testing task", startTime.plusHours(1),
+                Duration.ofMinutes(5)));
+
+        // первая задача попадает в пустой кеш, разовое чтение второй её не вытесняет
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, getTask(hotId).statusCode());
+        }
+        getTask(coldId);
+        assertTrue(responseCache.contains(hotId), "Частая задача вытеснена разовым чтением");
+        assertFalse(responseCache.contains(coldId), "Редкая задача попала в полный кеш");
+
+        // став чаще, вторая задача вытесняет первую
+        for (int i = 0; i < 3; i++) {
+            getTask(coldId);
+        }
+        assertTrue(responseCache.contains(coldId), "Частая задача не попала в кеш");
+        assertFalse(responseCache.contains(hotId), "Редкая задача не вытеснена");
+
+        Task renamed = new Task(coldId, "Renamed", "Testing task", Status.DONE, startTime.plusHours(1),
+                Duration.ofMinutes(5));
+        HttpRequest put = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks?id=" + coldId))
+                .PUT(HttpRequest.BodyPublishers.ofString(gson.toJson(renamed))).build();
+        assertEquals(201, client.send(put, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertFalse(responseCache.contains(coldId), "Обновление не сняло задачу с кеша");
+        assertTrue(getTask(coldId).body().contains("Renamed"), "Отдано устаревшее тело");
+
+        HttpRequest delete = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks?id=" + coldId))
+                .DELETE().build();
+        assertEquals(200, client.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(0, responseCache.size(), "Удаление не сняло задачу с кеша");
+    }
+
+    // Просмотры из сессий и через общую историю считаются в одном sketch, каждый ровно один раз
+    @Test
+    public void testSessionAndManagerReadsShareOneFrequencySignal() throws IOException, InterruptedException {
+        LocalDateTime startTime = LocalDateTime.of(2024, 10, 1, 1, 0);
+        final int firstId = manager.addNewTask(new Task("First", "Testing task", startTime, Duration.ofMinutes(5)));
+        final int sessionId = manager.addNewTask(new Task("Session", "Testing task", startTime.plusHours(1),
+                Duration.ofMinutes(5)));
+
+        getTask(firstId);
+        assertEquals(1, sketch.frequency(firstId), "Чтение через общую историю посчитано неверно");
+        for (int i = 0; i < 3; i++) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks?id=" + sessionId))
+                    .header(HistorySessions.HEADER, "client").GET().build();
+            assertEquals(200, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+        assertEquals(3, sketch.frequency(sessionId), "Чтения сессии посчитаны неверно");
+        assertTrue(responseCache.contains(sessionId), "Частая в сессиях задача не попала в кеш");
+        assertFalse(responseCache.contains(firstId), "Редкая задача не вытеснена");
+    }
+
+    private HttpResponse<String> getTask(int id) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/tasks?id=" + id))
+                .GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
     private void checkTaskEquality(Task expected, Task actual) {
         assertEquals(expected.getId(), actual.getId(), "ID задач не совпадают");
         assertEquals(expected.getType(), actual.getType(), "Типы задач не совпадают");
@@ -1,5 +1,8 @@
 
 import manager.HistoryManager;
+import manager.HistoryPolicy;
+import manager.InMemoryHistoryManager;
+import manager.InMemoryTaskManager;
 import manager.Managers;
 import manager.TaskManager;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,6 +12,11 @@ import task.Status;
 import task.Subtask;
 import task.Task;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -179,5 +187,74 @@ public class InMemoryHistoryManagerTest {
         assertTrue(history.contains(task2), "История должна содержать задачу task2");
     }
 
-}
+    @Test
+    public void boundedHistoryShouldEvictLeastRecentlyViewed() {
+        historyManager = Managers.getDefaultHistory(new HistoryPolicy(2, null));
+        Task task1 = new Task(1, "Задача 1", "Описание 1", Status.NEW);
+        Task task2 = new Task(2, "Задача 2", "Описание 2", Status.NEW);
+        Task task3 = new Task(3, "Задача 3", "Описание 3", Status.NEW);
+
+        historyManager.add(task1);
+        historyManager.add(task2);
+        historyManager.add(task1); // task2 становится самой давней
+        historyManager.add(task3);
+
+        assertEquals(List.of(task1, task3), historyManager.getHistory(), "Вытеснена не самая давняя задача");
+    }
+
+    @Test
+    public void expiredEntriesShouldLeaveHistory() {
+        MutableClock clock = new MutableClock();
+        historyManager = new InMemoryHistoryManager(new HistoryPolicy(10, Duration.ofMinutes(5)), clock);
+        Task task1 = new Task(1, "Задача 1", "Описание 1", Status.NEW);
+        Task task2 = new Task(2, "Задача 2", "Описание 2", Status.NEW);
 
+        historyManager.add(task1);
+        clock.advance(Duration.ofMinutes(3));
+        historyManager.add(task2);
+        clock.advance(Duration.ofMinutes(3));
+
+        assertEquals(List.of(task2), historyManager.getHistory(), "Устаревшая запись осталась в истории");
+        clock.advance(Duration.ofMinutes(3));
+        assertTrue(historyManager.getHistory().isEmpty(), "История должна опустеть");
+    }
+
+    // История из id возвращает текущие версии задач и не держит удалённые
+    @Test
+    public void idHistoryShouldResolveLiveTasks() {
+        TaskManager manager = new InMemoryTaskManager(Managers.getIdHistory(HistoryPolicy.unbounded()));
+        int taskId = manager.addNewTask(new Task("Задача 1", "Описание 1", Status.NEW));
+        int epicId = manager.addNewEpic(new Epic("Эпик 1", "Описание эпика"));
+        manager.getTask(taskId);
+        manager.getEpic(epicId);
+        manager.updateTask(new Task(taskId, "Новое имя", "Новое описание", Status.IN_PROGRESS));
+        manager.deleteEpic(epicId);
+
+        List<Task> history = manager.getHistory();
+        assertEquals(1, history.size(), "Удалённый эпик остался в истории");
+        assertEquals("Новое имя", history.getFirst().getName(), "История должна вернуть текущую версию");
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -1,11 +1,23 @@
+import exception.ManagerValidatePriorityException;
 import manager.InMemoryTaskManager;
 import manager.Managers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import task.Epic;
 import task.Status;
+import task.Subtask;
 import task.Task;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 
 public class InMemoryTaskManagerTest extends AbstractTaskManagerTest {
 
@@ -22,4 +34,178 @@ public class InMemoryTaskManagerTest extends AbstractTaskManagerTest {
     public void finish() {
 
     }
+
+    @Test
+    void timeConflictCheckFindsNeighboursAmongManyScheduledTasks() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < 50_000; i++) {
+            taskManager.addNewTask(new Task("Задача " + i, "Описание", start.plusHours(2L * i),
+                    Duration.ofHours(1)));
+        }
+        Task overlapping = new Task("Пересечение", "Описание", start.plusHours(50_000).plusMinutes(30),
+                Duration.ofHours(1));
+        assertThrows(ManagerValidatePriorityException.class, () -> taskManager.addNewTask(overlapping));
+        Task inGap = new Task("В промежутке", "Описание", start.plusHours(50_001), Duration.ofHours(1));
+        taskManager.addNewTask(inGap);
+        assertEquals(50_001, taskManager.getPrioritizedTasks().size(), "Неверное количество задач");
+    }
+
+    @Test
+    void updateTaskChecksTimeConflictsExceptWithItself() {
+        Task first = new Task("Задача - 1", "Описание", LocalDateTime.of(2024, 1, 1, 10, 0),
+                Duration.ofHours(1));
+        Task second = new Task("Задача - 2", "Описание", LocalDateTime.of(2024, 1, 1, 12, 0),
+                Duration.ofHours(1));
+        taskManager.addNewTask(first);
+        final int secondId = taskManager.addNewTask(second);
+        Task moved = new Task(secondId, "Задача - 2", "Описание", Status.NEW, LocalDateTime.of(2024, 1, 1, 12, 30),
+                Duration.ofHours(1));
+        taskManager.updateTask(moved);
+        Task overlapping = new Task(secondId, "Задача - 2", "Описание", Status.NEW,
+                LocalDateTime.of(2024, 1, 1, 10, 30), Duration.ofHours(1));
+        assertThrows(ManagerValidatePriorityException.class, () -> taskManager.updateTask(overlapping));
+    }
+
+    @Test
+    void slotCalendarAnswersWindowQueriesAndKeepsSharedSlots() {
+        InMemoryTaskManager manager = new InMemoryTaskManager(Managers.getDefaultHistory());
+        manager.enableSlotCalendar(Duration.ofMinutes(15));
+        LocalDateTime day = LocalDateTime.of(2024, 1, 1, 0, 0);
+        manager.addNewTask(new Task("Утро", "Описание", day.plusHours(9), Duration.ofHours(1)));
+        // две задачи делят слот 12:00-12:15
+        manager.addNewTask(new Task("До обеда", "Описание", day.plusHours(11).plusMinutes(50),
+                Duration.ofMinutes(15)));
+        final int lunchId = manager.addNewTask(new Task("Обед", "Описание", day.plusHours(12).plusMinutes(5),
+                Duration.ofMinutes(5)));
+
+        assertFalse(manager.isWindowFree(day.plusHours(9).plusMinutes(30), Duration.ofMinutes(15)),
+                "Занятое окно считается свободным");
+        assertTrue(manager.isWindowFree(day.plusHours(10), Duration.ofHours(1)), "Свободное окно считается занятым");
+        assertTrue(manager.isWindowFree(day.plusHours(12).plusMinutes(10), Duration.ofMinutes(5)),
+                "Окно внутри занятого слота между задачами считается занятым");
+        assertTrue(manager.isWindowFree(day.plusDays(3), Duration.ofDays(1)), "Пустой день считается занятым");
+
+        manager.deleteTask(lunchId);
+        assertFalse(manager.isWindowFree(day.plusHours(12), Duration.ofMinutes(1)),
+                "Удаление соседней задачи освободило общий слот");
+        assertThrows(ManagerValidatePriorityException.class, () -> manager.addNewTask(new Task("Пересечение",
+                "Описание", day.plusHours(12), Duration.ofMinutes(10))));
+    }
+
+    @Test
+    void findFreeWindowSkipsGapsThatAreTooShort() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        // задачи по часу с часовыми промежутками, у последней задачи промежуток перед ней три часа
+        for (int i = 0; i < 100_000; i++) {
+            taskManager.addNewTask(new Task("Задача " + i, "Описание", start.plusHours(2L * i + (i == 99_999 ? 2 : 0)),
+                    Duration.ofHours(1)));
+        }
+        assertEquals(start.plusHours(2L * 99_998 + 1), taskManager.findFreeWindow(start, Duration.ofHours(2)),
+                "Найдено окно, в которое задача не помещается");
+        assertEquals(start.plusHours(1), taskManager.findFreeWindow(start.plusMinutes(30), Duration.ofMinutes(30)),
+                "Окно должно начинаться сразу после текущей задачи");
+        assertEquals(start.plusHours(3).plusMinutes(10),
+                taskManager.findFreeWindow(start.plusHours(3).plusMinutes(10), Duration.ofMinutes(50)),
+                "Окно внутри промежутка должно начинаться с запрошенного времени");
+        assertEquals(start.minusDays(1), taskManager.findFreeWindow(start.minusDays(1), Duration.ofHours(24)),
+                "Время до первой задачи должно быть свободно");
+
+        taskManager.deleteTask(2);
+        assertEquals(start.plusHours(1), taskManager.findFreeWindow(start, Duration.ofHours(3)),
+                "Промежутки вокруг удалённой задачи не объединились");
+
+        // Время до 1970 года отрицательно в секундах эпохи: бесконечный промежуток после задач его вмещает
+        InMemoryTaskManager empty = new InMemoryTaskManager(Managers.getDefaultHistory());
+        LocalDateTime beforeEpoch = LocalDateTime.of(1900, 1, 1, 0, 0);
+        assertEquals(beforeEpoch, empty.findFreeWindow(beforeEpoch, Duration.ofHours(1)),
+                "Окно до 1970 года не найдено на пустой доске");
+    }
+
+    @Test
+    void prioritizedIndexKeepsEqualStartsAndFollowsReschedules() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+        // задачи нулевой длительности с одинаковым началом не пересекаются и обе попадают в список
+        final int firstId = taskManager.addNewTask(new Task("Веха - 1", "Описание", start, Duration.ZERO));
+        taskManager.addNewTask(new Task("Веха - 2", "Описание", start, Duration.ZERO));
+        assertEquals(2, taskManager.getPrioritizedTasks().size(), "Задачи с одинаковым началом схлопнулись");
+
+        taskManager.updateTask(new Task(firstId, "Веха - 1", "Описание", Status.NEW, start.plusHours(2),
+                Duration.ofHours(1)));
+        assertEquals(start.plusHours(2), taskManager.getPrioritizedTasks().get(1).getStartTime(),
+                "Перенесённая задача осталась на старом месте");
+        assertEquals(2, taskManager.getPrioritizedTasks().size(), "Перенос задачи оставил старую запись");
+        assertTrue(taskManager.isWindowFree(start.plusMinutes(30), Duration.ofMinutes(30)),
+                "Старое время перенесённой задачи осталось занятым");
+
+        Epic parent = new Epic("Эпик", "Описание");
+        final int epicId = taskManager.addNewEpic(parent);
+        taskManager.addNewSubtask(new Subtask("Подзадача", "Описание", start.plusDays(1), Duration.ofHours(1),
+                epicId));
+        taskManager.deleteEpics();
+        assertEquals(2, taskManager.getPrioritizedTasks().size(), "Подзадачи удалённых эпиков остались в списке");
+        assertTrue(taskManager.isWindowFree(start.plusDays(1), Duration.ofHours(1)),
+                "Время подзадачи удалённого эпика осталось занятым");
+    }
+
+    @Test
+    void prioritizedPageReturnsTasksOfRangeAfterCursor() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            taskManager.addNewTask(new Task("Задача " + i, "Описание", start.plusDays(i), Duration.ofHours(12)));
+        }
+        List<Task> week = taskManager.getPrioritizedTasks(start.plusDays(2).plusHours(6), start.plusDays(7), 100, null);
+        assertEquals(5, week.size(), "Неверное количество задач в интервале");
+        assertEquals(start.plusDays(2), week.get(0).getStartTime(), "Задача, заходящая в интервал, не попала в него");
+
+        List<Task> firstPage = taskManager.getPrioritizedTasks(null, null, 4, null);
+        List<Task> secondPage = taskManager.getPrioritizedTasks(null, null, 4, firstPage.get(3).getId());
+        assertEquals(4, secondPage.size(), "Неверный размер страницы");
+        assertEquals(start.plusDays(4), secondPage.get(0).getStartTime(), "Страница не продолжает предыдущую");
+        assertThrows(IllegalArgumentException.class, () -> taskManager.getPrioritizedTasks(null, null, 0, null));
+    }
+
+    @Test
+    void epicFieldsFollowSubtaskChangesIncrementally() {
+        final int epicId = taskManager.addNewEpic(new Epic("Эпик", "Описание"));
+        Epic epic = taskManager.getEpicsMap().get(epicId);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+        int firstId = taskManager.addNewSubtask(new Subtask("Подзадача 1", "Описание", Status.NEW, start,
+                Duration.ofMinutes(30), epicId));
+        assertEpic(epic, Status.NEW, start, start.plusMinutes(30), Duration.ofMinutes(30));
+
+        int secondId = taskManager.addNewSubtask(new Subtask("Подзадача 2", "Описание", Status.IN_PROGRESS,
+                start.plusHours(2), Duration.ofHours(1), epicId));
+        assertEpic(epic, Status.IN_PROGRESS, start, start.plusHours(3), Duration.ofMinutes(90));
+
+        int thirdId = taskManager.addNewSubtask(new Subtask("Подзадача 3", "Описание", Status.DONE, epicId));
+        assertEpic(epic, Status.IN_PROGRESS, start, start.plusHours(3), Duration.ofMinutes(90));
+
+        taskManager.updateSubtask(new Subtask(secondId, "Подзадача 2", "Описание", Status.DONE,
+                start.minusHours(1), Duration.ofMinutes(30), epicId));
+        assertEpic(epic, Status.NEW, start.minusHours(1), start.plusMinutes(30), Duration.ofHours(1));
+
+        taskManager.updateSubtask(new Subtask(firstId, "Подзадача 1", "Описание", Status.DONE, start,
+                Duration.ofMinutes(30), epicId));
+        assertEpic(epic, Status.DONE, start.minusHours(1), start.plusMinutes(30), Duration.ofHours(1));
+
+        taskManager.deleteSubtask(secondId);
+        assertEpic(epic, Status.DONE, start, start.plusMinutes(30), Duration.ofMinutes(30));
+
+        taskManager.updateSubtask(new Subtask(thirdId, "Подзадача 3", "Описание", Status.IN_PROGRESS,
+                start.plusDays(1), Duration.ofHours(2), epicId));
+        assertEpic(epic, Status.IN_PROGRESS, start, start.plusDays(1).plusHours(2), Duration.ofMinutes(150));
+
+        taskManager.deleteSubtask(firstId);
+        taskManager.deleteSubtask(thirdId);
+        assertEpic(epic, Status.NEW, null, null, Duration.ZERO);
+    }
+
+    private static void assertEpic(Epic epic, Status status, LocalDateTime startTime, LocalDateTime endTime,
+                                   Duration duration) {
+        assertEquals(status, epic.getStatus(), "Статус эпика не пересчитан");
+        assertEquals(startTime, epic.getStartTime(), "Неверное начало эпика");
+        assertEquals(endTime, epic.getEndTime(), "Неверное окончание эпика");
+        assertEquals(duration, epic.getDuration(), "Неверная длительность эпика");
+    }
 }
@@ -0,0 +1,75 @@
+import org.junit.jupiter.api.Test;
+import util.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class IntObjectMapTest {
+
+    @Test
+    public void putGetRemoveAndIterateInInsertionOrder() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        for (int id = 1; id <= 10; id++) {
+            assertNull(map.put(id, "Задача " + id));
+        }
+        assertEquals("Задача 3", map.put(3, "Новая задача 3"), "put не вернул прежнее значение");
+        assertEquals("Задача 4", map.remove(4), "remove не вернул удалённое значение");
+        assertFalse(map.containsKey(4), "Удалённый ключ найден");
+        assertNull(map.remove(4));
+        map.put(4, "Снова задача 4");
+        assertEquals(10, map.size(), "Неверный размер");
+        assertEquals(List.of(1, 2, 3, 5, 6, 7, 8, 9, 10, 4), List.copyOf(map.keySet()),
+                "Ключи обходятся не в порядке добавления");
+
+        Iterator<String> values = map.values().iterator();
+        while (values.hasNext()) {
+            if (values.next().startsWith("Задача")) {
+                values.remove();
+            }
+        }
+        assertEquals(Map.of(3, "Новая задача 3", 4, "Снова задача 4"), map, "Удаление через итератор не сработало");
+    }
+
+    // Последовательные id, удаление и повторная вставка тех же ключей — как у индекса по времени и сводок эпиков
+    @Test
+    public void removesAndReinsertsSequentialIds() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        int count = 20_000;
+        for (int id = 1; id <= count; id++) {
+            map.put(id, "Задача " + id);
+        }
+        for (int id = 1; id <= count; id += 2) {
+            assertEquals("Задача " + id, map.remove(id), "remove не вернул удалённое значение");
+            assertNull(map.get(id), "Удалённый ключ найден");
+            assertFalse(map.containsKey(id), "Удалённый ключ найден");
+        }
+        for (int id = 2; id <= count; id += 2) {
+            map.remove(id);
+            assertNull(map.put(id, "Новая задача " + id), "Ключ не был удалён");
+        }
+        assertEquals(count / 2, map.size(), "Неверный размер после удалений и вставок");
+        for (int id = 1; id <= count; id++) {
+            assertEquals(id % 2 == 0, map.containsKey(id), "Неверное наличие ключа " + id);
+        }
+        assertEquals("Новая задача 4", map.get(4), "Значение не обновилось");
+
+        for (int id = 1; id <= count; id += 2) {
+            map.put(id, "Задача " + id);
+        }
+        assertEquals(count, map.size(), "Неверный размер после повторной вставки");
+        List<Integer> expectedOrder = new ArrayList<>();
+        for (int id = 2; id <= count; id += 2) {
+            expectedOrder.add(id);
+        }
+        for (int id = 1; id <= count; id += 2) {
+            expectedOrder.add(id);
+        }
+        assertEquals(expectedOrder, List.copyOf(map.keySet()), "Ключи обходятся не в порядке добавления");
+    }
+}
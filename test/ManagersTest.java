@@ -1,10 +1,14 @@
 
+import manager.HistoryManager;
 import manager.InMemoryHistoryManager;
 import manager.InMemoryTaskManager;
 import manager.Managers;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import task.Status;
+import task.Task;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 
 public class ManagersTest {
@@ -19,4 +23,14 @@ public class ManagersTest {
         assertInstanceOf(InMemoryHistoryManager.class, Managers.getDefaultHistory());
     }
 
+    // История по умолчанию ограничена: старые просмотры вытесняются, а не копятся
+    @Test
+    void getDefaultHistoryShouldBeBounded() {
+        HistoryManager history = Managers.getDefaultHistory();
+        for (int id = 1; id <= Managers.DEFAULT_HISTORY_CAPACITY + 10; id++) {
+            history.add(new Task(id, "Задача", "Описание", Status.NEW));
+        }
+        assertEquals(Managers.DEFAULT_HISTORY_CAPACITY, history.getHistory().size(), "История не ограничена");
+        assertEquals(11, history.getHistory().getFirst().getId(), "Вытеснены не самые старые просмотры");
+    }
 }
@@ -3,6 +3,9 @@ import org.junit.jupiter.api.Test;
 import task.Status;
 import task.Subtask;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class SubtaskTest {
@@ -15,4 +18,12 @@ public class SubtaskTest {
         subtask2.setId(10);
         assertEquals(subtask1, subtask2, "Ошибка");
     }
+
+    @Test
+    public void constructorWithIdAndTimeKeepsNameAndDescriptionOrder() {
+        Subtask subtask = new Subtask(10, "Купить хлеба", "Очень срочно", Status.NEW,
+                LocalDateTime.of(2024, 1, 1, 10, 0), Duration.ofMinutes(15), 5);
+        assertEquals("Купить хлеба", subtask.getName(), "Имя попало в описание");
+        assertEquals("Очень срочно", subtask.getDescription(), "Описание попало в имя");
+    }
 }